@@ -21,12 +21,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Locale;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
 
 public class BIMProjectParser
     implements
@@ -41,6 +50,33 @@ public class BIMProjectParser
 	private final Locale             _locale;
 	private final HashSet<String>    _spaceSet = new HashSet<String>();
 	private String                   _vendorAttribute = null;
+	private int                      _threadCount     = Runtime.getRuntime().availableProcessors();
+	private int                      _evaluationCount = 0;
+	private final PipelineStats      _pipelineStats   = new PipelineStats();
+	private final MemoryGovernor     _memoryGovernor  = new MemoryGovernor( DEFAULT_HEAP_BUDGET );
+	private ItemSink                 _itemSink        = null;
+	private boolean                  _retainItems     = true;
+	private StringPool               _stringPool      = null;    // Created when FLAG_STRING_POOL is set
+
+	// Attribute types by case folded name for findAttributeType, and the page and
+	// item count it was built from
+	private Hashtable<String, Item>  _attribTypeIndex = null;
+	private Page                     _attribTypeIndexPage  = null;
+	private int                      _attribTypeIndexCount = 0;
+
+	// Value lists by value set for getValueList, and the page and item count it was
+	// built from.  HashSet hashes its values independent of order
+	private HashMap<HashSet<String>, ItemValueList> _valueListIndex = null;
+	private Page                     _valueListIndexPage  = null;
+	private int                      _valueListIndexCount = 0;
+
+	/**
+	 * Share of the maximum heap that may be in use before cold pages are spilled
+	 */
+	public static final double DEFAULT_HEAP_BUDGET = 0.75;
+
+	// Items looked up by each task when FLAG_PARALLEL_RESOLVE is set
+	private static final int RESOLVE_BATCH_ITEMS = 1024;
 	
 	// It appears that the COBie 3.0 spec will eliminate many/most of the optional
 	// fields (green columns) in favor of attributes.  This list provides a mechanism
@@ -176,11 +212,18 @@ public class BIMProjectParser
 
 	public void execute()
 	{
-		// Search for each individual sheet so the upload order is deterministic
-		// This determines how IDs are assigned
-		for( int i = 0; i < _pageNames.length; i++ )
+		if( (_flags & FLAG_PARALLEL_FILES) != 0 && _threadCount > 1 && _files.size() > 1 )
 		{
-			parseFile(_pageNames[i]);
+			parseFilesParallel();
+		}
+		else
+		{
+			// Search for each individual sheet so the upload order is deterministic
+			// This determines how IDs are assigned
+			for( int i = 0; i < _pageNames.length; i++ )
+			{
+				parseFile(_pageNames[i]);
+			}
 		}
 		extractAttributeTypes();
 		resolveReferences();
@@ -223,6 +266,15 @@ public class BIMProjectParser
 
 	public void clenup()
 	{
+		_memoryGovernor.close();
+		if( _stringPool != null )
+		{
+			_stringPool.clear();
+		}
+		_attribTypeIndex     = null;
+		_attribTypeIndexPage = null;
+		_valueListIndex      = null;
+		_valueListIndexPage  = null;
 		_idFactory = null;
 		_parseTree = null;
 		_files = null;
@@ -292,6 +344,171 @@ public class BIMProjectParser
 		}
 	}
 
+	/**
+	 * Parses the input files on a pool of threads.  Each file is parsed by a staged
+	 * CobieParser that keeps its rows to itself, then the staged files are applied to
+	 * the parse tree one at a time in the order parseFile would have loaded them.  IDs,
+	 * duplicate handling and messages are the same as a sequential load.  At most
+	 * getThreadCount files are staged or being staged at a time, and each file is
+	 * applied as soon as the files before it have been, so the staged rows held in
+	 * memory are limited to that many files
+	 */
+	protected void parseFilesParallel()
+	{
+		// The order parseFile loads the files in
+		LinkedList<InputFile> ordered = new LinkedList<InputFile>();
+		for( int i = 0; i < _pageNames.length; i++ )
+		{
+			Iterator<InputFile> itr = _files.iterator();
+			while( itr.hasNext() )
+			{
+				InputFile cobieFile = itr.next();
+				if( !cobieFile.getSheetName().equalsIgnoreCase(_pageNames[i]) )
+				{
+					continue;
+				}
+				String fileName = cobieFile.getFileName();
+				if(    cobieFile.getFileStream() == null
+					&& ( fileName == null || fileName.length() == 0 ))
+				{
+					continue;
+				}
+				ordered.add( cobieFile );
+			}
+		}
+		if( ordered.isEmpty() )
+		{
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool( Math.min( _threadCount, ordered.size() ));
+		// A permit for each file that is staged, or being staged, and not yet applied
+		Semaphore                      inFlight = new Semaphore( _threadCount );
+		LinkedList<Future<StagedLoad>> pending  = new LinkedList<Future<StagedLoad>>();
+		Iterator<InputFile>            toStage  = ordered.iterator();
+		Iterator<InputFile>            files    = ordered.iterator();
+		try
+		{
+			while( toStage.hasNext() || !pending.isEmpty() )
+			{
+				while( toStage.hasNext() && inFlight.tryAcquire() )
+				{
+					final InputFile cobieFile = toStage.next();
+					pending.add( pool.submit( new Callable<StagedLoad>()
+					{
+						public StagedLoad call()
+						{
+							return stage( cobieFile, ITEM_CLASS_PREFIX );
+						}
+					} ));
+				}
+
+				InputFile  cobieFile = files.next();
+				StagedLoad load      = pending.removeFirst().get();
+				if( load._parser != null )
+				{
+					load._parser.applyStaged( this, _idFactory, _parseTree, _flags );
+					_evaluationCount += load._parser.getEvaluationCount();
+					_pipelineStats.add( load._parser.getPipelineStats() );
+					load._parser.close();
+				}
+				inFlight.release();
+
+				ParseException pe = load._error;
+				if( pe != null )
+				{
+					if( pe.getKey().length() > 0 )
+					{
+						_logger.error(pe.getKey(), pe.getParams());
+					}
+					else
+					{
+						_logger.exception(cobieFile.getSheetName(), "", pe);
+					}
+					continue;
+				}
+				if( cobieFile.getFileStream() == null )
+				{
+					String params[] = { cobieFile.getFileName() };
+					_logger.message(Parser.MSG_FILE_PARSED, params);
+					System.out.println("Load: " + cobieFile.getFileName());
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			_logger.exception( e );
+		}
+		catch( ExecutionException e )
+		{
+			if( e.getCause() instanceof Error )
+			{
+				throw (Error)e.getCause();
+			}
+			if( e.getCause() instanceof RuntimeException )
+			{
+				throw (RuntimeException)e.getCause();
+			}
+			throw new RuntimeException( e.getCause() );
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Parses a file without changing the parse tree.  Called on a pool thread
+	 */
+	private StagedLoad stage(
+	    InputFile cobieFile,
+	    String    packageName
+	) {
+		String[] list = new String[1];
+		list[0] = cobieFile.getSheetName();
+
+		StagedLoad load = new StagedLoad();
+		try
+		{
+			load._parser = new CobieParser(this, cobieFile.getSheetName(), cobieFile, _flags );
+			load._parser.setThreadCount( _threadCount );
+			if( (_flags & FLAG_SPILL_PAGES) != 0 )
+			{
+				load._parser.setMemoryGovernor( _memoryGovernor );
+			}
+			load._parser.setItemSink( _itemSink, _retainItems );
+			if( (_flags & FLAG_STRING_POOL) != 0 )
+			{
+				load._parser.setStringPool( stringPool() );
+			}
+			load._parser.stage();
+			load._parser.parse( this, _idFactory, _parseTree, list, packageName, _flags);
+		}
+		catch( ParseException pe )
+		{
+			load._error = pe;
+		}
+		finally
+		{
+			// The work book is not needed to apply the staged rows
+			if( load._parser != null )
+			{
+				load._parser.closeInput();
+			}
+		}
+		return load;
+	}
+
+	/**
+	 * A file parsed by parseFilesParallel, waiting to be applied to the parse tree
+	 */
+	private static class StagedLoad
+	{
+		private CobieParser    _parser = null;
+		private ParseException _error  = null;
+	}
+
 	protected void load(
 	    InputFile cobieFile,
 	    String packageName
@@ -301,8 +518,20 @@ public class BIMProjectParser
 		String[] list = new String[1];
 		list[0] = cobieFile.getSheetName();
 
-		CobieParser cobieParser = new CobieParser(this, cobieFile.getSheetName(), cobieFile );
+		CobieParser cobieParser = new CobieParser(this, cobieFile.getSheetName(), cobieFile, _flags );
+		cobieParser.setThreadCount( _threadCount );
+		if( (_flags & FLAG_SPILL_PAGES) != 0 )
+		{
+			cobieParser.setMemoryGovernor( _memoryGovernor );
+		}
+		cobieParser.setItemSink( _itemSink, _retainItems );
+		if( (_flags & FLAG_STRING_POOL) != 0 )
+		{
+			cobieParser.setStringPool( stringPool() );
+		}
 		cobieParser.parse( this, _idFactory, _parseTree, list, packageName, _flags);
+		_evaluationCount += cobieParser.getEvaluationCount();
+		_pipelineStats.add( cobieParser.getPipelineStats() );
 		cobieParser.close();
 	}
 
@@ -324,28 +553,65 @@ public class BIMProjectParser
 		{
 			return null;
 		}
+		if( page != _attribTypeIndexPage || page.getItemCount() != _attribTypeIndexCount )
+		{
+			indexAttributeTypes( page );
+		}
+		Item item = _attribTypeIndex.get( foldCase( name ));
+		if( item instanceof ItemAttributeType )
+		{
+			return (ItemAttributeType) item;
+		}
+		return null;
+	}
+
+	/**
+	 * Indexes the attribute type page by case folded name.  When names differ only
+	 * by case the first item on the page is kept, which is the one a scan using
+	 * equalsIgnoreCase would find
+	 */
+	private void indexAttributeTypes(
+		Page page
+	) {
+		_attribTypeIndex      = new Hashtable<String, Item>();
+		_attribTypeIndexPage  = page;
+		_attribTypeIndexCount = page.getItemCount();
 		Iterator<Item> itr = page.iterator();
 		while( itr.hasNext() )
 		{
-			Item item = itr.next();
-			String itemName = item.getName();
-			if( itemName == null || itemName.length() == 0 )
-			{
-				continue;
-			}
-			if( itemName.equalsIgnoreCase(name) )
-			{
-				if( item instanceof ItemAttributeType )
-				{
-					return (ItemAttributeType) item;
-				}
-				else
-				{
-					return null;
-				}
-			}
+			indexAttributeType( itr.next() );
 		}
-		return null;
+	}
+
+	private void indexAttributeType(
+		Item item
+	) {
+		String itemName = item.getName();
+		if( itemName == null || itemName.length() == 0 )
+		{
+			return;
+		}
+		String key = foldCase( itemName );
+		if( !_attribTypeIndex.containsKey( key ))
+		{
+			_attribTypeIndex.put( key, item );
+		}
+	}
+
+	/**
+	 * Maps each character the way String.equalsIgnoreCase compares it, so two names
+	 * have the same result exactly when equalsIgnoreCase is true.  toUpperCase on the
+	 * whole string can change its length and match names equalsIgnoreCase doesn't
+	 */
+	private static String foldCase(
+		String s
+	) {
+		char[] chars = s.toCharArray();
+		for( int i = 0; i < chars.length; i++ )
+		{
+			chars[i] = Character.toLowerCase( Character.toUpperCase( chars[i] ));
+		}
+		return new String( chars );
 	}
 
 	/**
@@ -381,77 +647,188 @@ public class BIMProjectParser
 			page = pages.nextElement();
 			tempPages.put( page.getPageName(), page );
 		}
-		@SuppressWarnings("unused")			// For debugging
-		long pageCount = 0;
-		page = tempPages.get( Parser.SHEET_ATTRIBUTE );
-		if( page != null )
+
+		ForkJoinPool pool = null;
+		if( (_flags & FLAG_PARALLEL_RESOLVE) != 0 && _threadCount > 1 )
 		{
-			itr = page.iterator();
-			while( itr.hasNext() )
+			// Read back spilled pages and create compact attributes now, so the pool
+			// threads only read the pages
+			pages = tempPages.elements();
+			while( pages.hasMoreElements() )
 			{
-				Item item = itr.next();
-				item.resolveRerefences(this, _flags);
-				_itemCount++;
+				pages.nextElement().load();
 			}
-			pageCount++;
-			tempPages.remove(  Parser.SHEET_ATTRIBUTE  );
+			pool = new ForkJoinPool( _threadCount );
 		}
-		page = tempPages.get( Parser.SHEET_FACILITY );
-		if( page != null )
+
+		try
 		{
-			itr = page.iterator();
-			while( itr.hasNext() )
+			@SuppressWarnings("unused")			// For debugging
+			long pageCount = 0;
+			page = tempPages.get( Parser.SHEET_ATTRIBUTE );
+			if( page != null )
 			{
-				Item item = itr.next();
-				item.resolveRerefences(this, _flags);
-				_itemCount++;
+				_itemCount += resolvePage( page, pool );
+				pageCount++;
+				tempPages.remove(  Parser.SHEET_ATTRIBUTE  );
+			}
+			page = tempPages.get( Parser.SHEET_FACILITY );
+			if( page != null )
+			{
+				_itemCount += resolvePage( page, pool );
+				pageCount++;
+				tempPages.remove(  Parser.SHEET_FACILITY  );
+			}
+			page = tempPages.get( Parser.SHEET_FLOOR );
+			if( page != null )
+			{
+				_itemCount += resolvePage( page, pool );
+				pageCount++;
+				tempPages.remove(  Parser.SHEET_FLOOR  );
+			}
+			page = tempPages.get( Parser.SHEET_SPACE );
+			if( page != null )
+			{
+				_itemCount += resolvePage( page, pool );
+				pageCount++;
+				tempPages.remove(  Parser.SHEET_SPACE  );
+			}
+			pages = tempPages.elements();
+			while( pages.hasMoreElements() )
+			{
+				page = pages.nextElement();
+				boolean addToCount = true;
+				if( page.getPageName().equalsIgnoreCase(Parser.SHEET_ATTRIBUTE) )
+				{
+					addToCount = false;
+				}
+				int count = resolvePage( page, pool );
+				if( addToCount )
+					_itemCount += count;
+				pageCount += count;
 			}
-			pageCount++;
-			tempPages.remove(  Parser.SHEET_FACILITY  );
 		}
-		page = tempPages.get( Parser.SHEET_FLOOR );
-		if( page != null )
+		finally
 		{
-			itr = page.iterator();
-			while( itr.hasNext() )
+			if( pool != null )
 			{
-				Item item = itr.next();
-				item.resolveRerefences(this, _flags);
-				_itemCount++;
+				pool.shutdown();
 			}
-			pageCount++;
-			tempPages.remove(  Parser.SHEET_FLOOR  );
 		}
-		page = tempPages.get( Parser.SHEET_SPACE );
-		if( page != null )
+	}
+
+	/**
+	 * Resolves the references of every item on a page.  With a pool, the items are
+	 * looked up on the pool's threads and then linked on this thread in page order,
+	 * so the links and messages are the same as resolving them one at a time.  With
+	 * FLAG_JOIN_REFERENCES the declared references of the whole page are looked up
+	 * first, once for each distinct key
+	 * @param pool Pool for the lookups, or null to look them up on this thread
+	 * @return The number of items on the page
+	 */
+	private int resolvePage(
+	    Page         page,
+	    ForkJoinPool pool
+    ) {
+		boolean join = (_flags & FLAG_JOIN_REFERENCES) != 0;
+		if(    ( pool == null || page.getItemCount() < RESOLVE_BATCH_ITEMS )
+			&& !join )
 		{
-			itr = page.iterator();
+			int count = 0;
+			Iterator<Item> itr = page.iterator();
 			while( itr.hasNext() )
 			{
 				Item item = itr.next();
 				item.resolveRerefences(this, _flags);
-				_itemCount++;
+				count++;
 			}
-			pageCount++;
-			tempPages.remove(  Parser.SHEET_SPACE  );
+			return count;
 		}
-		pages = tempPages.elements();
-		while( pages.hasMoreElements() )
+
+		Item              items[]   = new Item[page.getItemCount()];
+		ReferenceLookup   lookups[] = new ReferenceLookup[items.length];
+		Iterator<Item>    itr       = page.iterator();
+		for( int i = 0; i < items.length; i++ )
 		{
-			page = pages.nextElement();
-			boolean addToCount = true;
-			if( page.getPageName().equalsIgnoreCase(Parser.SHEET_ATTRIBUTE) )
+			items[i] = itr.next();
+		}
+		ReferenceJoin referenceJoin = join ? new ReferenceJoin( this, page.getPageName(), items ) : null;
+		if( pool != null && items.length >= RESOLVE_BATCH_ITEMS )
+		{
+			pool.invoke( new LookupTask( items, lookups, referenceJoin, 0, items.length ));
+		}
+		else
+		{
+			new LookupTask( items, lookups, referenceJoin, 0, items.length ).lookup();
+		}
+
+		for( int i = 0; i < items.length; i++ )
+		{
+			if( items[i] instanceof ItemBase )
 			{
-				addToCount = false;
+				((ItemBase)items[i]).applyReferences( this, _flags, lookups[i] );
 			}
-			itr = page.iterator();
-			while( itr.hasNext() )
+			else
 			{
-				Item item = itr.next();
-				item.resolveRerefences(this, _flags);
-				if( addToCount )
-					_itemCount++;
-				pageCount++;
+				items[i].resolveRerefences( this, _flags );
+			}
+		}
+		return items.length;
+	}
+
+	/**
+	 * Looks up the references of a range of items, splitting it until each task has
+	 * at most RESOLVE_BATCH_ITEMS
+	 */
+	private class LookupTask
+		extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Item            _items[];
+		private final ReferenceLookup _lookups[];
+		private final ReferenceJoin   _join;
+		private final int             _start;
+		private final int             _end;
+
+		LookupTask(
+			Item            items[],
+			ReferenceLookup lookups[],
+			ReferenceJoin   join,
+			int             start,
+			int             end
+		) {
+			_items   = items;
+			_lookups = lookups;
+			_join    = join;
+			_start   = start;
+			_end     = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if( _end - _start > RESOLVE_BATCH_ITEMS )
+			{
+				int middle = ( _start + _end ) >>> 1;
+				invokeAll( new LookupTask( _items, _lookups, _join, _start, middle ),
+				           new LookupTask( _items, _lookups, _join, middle, _end ));
+				return;
+			}
+			lookup();
+		}
+
+		/**
+		 * Looks up the whole range on this thread
+		 */
+		void lookup()
+		{
+			for( int i = _start; i < _end; i++ )
+			{
+				if( _items[i] instanceof ItemBase )
+				{
+					_lookups[i] = ((ItemBase)_items[i]).lookupReferences( BIMProjectParser.this, _flags, _join );
+				}
 			}
 		}
 	}
@@ -783,23 +1160,71 @@ public class BIMProjectParser
 		Page page = getPage(Parser.SHEET_VALUE_LIST);
 		if( page == null )
 			return null;
+		if( page != _valueListIndexPage || page.getItemCount() != _valueListIndexCount )
+		{
+			if( !indexValueLists( page ))
+				return null;
+		}
+		ItemValueList valueList = _valueListIndex.get( valueSet );
+		if( valueList != null )
+		{
+			return valueList;
+		}
+		valueList = new ItemValueList(valueSet);
+		valueList.setUniqueId(_idFactory.getUniqueId(Parser.SHEET_VALUE_LIST));
+		page.put(valueList);
+		_valueListIndex.put( valueSet, valueList );
+		_valueListIndexCount++;
+
+		return valueList;
+	}
+
+	/**
+	 * Indexes the value list page by value set, keeping the first list for each set
+	 * @return false if the page holds an item that isn't a value list
+	 */
+	private boolean indexValueLists(
+		Page page
+	) {
+		HashMap<HashSet<String>, ItemValueList> index = new HashMap<HashSet<String>, ItemValueList>();
 		Iterator<Item> itr = page.iterator();
 		while( itr.hasNext() )
 		{
 			Object o = itr.next();
 			if( !(o instanceof ItemValueList) )
-				return null;
+				return false;
 			ItemValueList valueList = (ItemValueList) o;
-			if( valueList.match(valueSet) )
+			if( !index.containsKey( valueList._valueSet ))
 			{
-				return valueList;
+				index.put( valueList._valueSet, valueList );
 			}
 		}
-		ItemValueList valueList = new ItemValueList(valueSet);
-		valueList.setUniqueId(_idFactory.getUniqueId(Parser.SHEET_VALUE_LIST));
-		page.put(valueList);
+		_valueListIndex      = index;
+		_valueListIndexPage  = page;
+		_valueListIndexCount = page.getItemCount();
+		return true;
+	}
 
-		return valueList;
+	/**
+	 * Parses the allowed values of an attribute once for each distinct string.  Equal
+	 * strings share a set, so value lists built from them compare by identity
+	 */
+	private HashSet<String> allowedValueSet(
+		ItemATTRIBUTE                    attrib,
+		HashMap<String, HashSet<String>> parsed
+	) {
+		String allowedValues = attrib.getAllowedValues();
+		if( allowedValues.length() == 0 )
+		{
+			return null;
+		}
+		HashSet<String> valueSet = parsed.get( allowedValues );
+		if( valueSet == null && !parsed.containsKey( allowedValues ))
+		{
+			valueSet = attrib.getAllowedValueSet();
+			parsed.put( allowedValues, valueSet );
+		}
+		return valueSet;
 	}
 
 	protected void extractAttributeTypes()
@@ -810,9 +1235,17 @@ public class BIMProjectParser
 
 		Page attribTyePage = new Page(Parser.SHEET_ATTRIB_TYPE);
 		_parseTree.put(attribTyePage.getPageName(), attribTyePage);
+		_attribTypeIndex      = new Hashtable<String, Item>();
+		_attribTypeIndexPage  = attribTyePage;
+		_attribTypeIndexCount = 0;
 
 		Page valueListPage = new Page(Parser.SHEET_VALUE_LIST);
 		_parseTree.put(valueListPage.getPageName(), valueListPage);
+		_valueListIndex      = new HashMap<HashSet<String>, ItemValueList>();
+		_valueListIndexPage  = valueListPage;
+		_valueListIndexCount = 0;
+
+		HashMap<String, HashSet<String>> allowedValues = new HashMap<String, HashSet<String>>();
 
 		Iterator<Item> itr = page.iterator();
 		while( itr.hasNext() )
@@ -827,20 +1260,22 @@ public class BIMProjectParser
 			ItemATTRIBUTE attrib = (ItemATTRIBUTE) item;
 			String name = convertCase( attrib.getName() );
 			ItemAttributeType type = (ItemAttributeType) attribTyePage.getItem( name );
+			HashSet<String> valueSet = allowedValueSet( attrib, allowedValues );
 			if( type != null )
 			{
-				if( type.compareAndUpdate(this, attrib) )
+				if( type.compareAndUpdate(this, attrib, valueSet) )
 				{
 					attrib.setType(type);
 					continue;
 				}
 			}
-			HashSet<String> valueSet = attrib.getAllowedValueSet();
 			ItemValueList valueList = getValueList(valueSet);
 			type = new ItemAttributeType( this, attrib, valueList, getLocale() );
 			type.setUniqueId(_idFactory.getUniqueId(Parser.SHEET_ATTRIB_TYPE));
 			attrib.setType(type);
 			attribTyePage.put(type);
+			indexAttributeType(type);
+			_attribTypeIndexCount++;
 			_itemCount++;
 		}
 	}
@@ -1117,6 +1552,100 @@ public class BIMProjectParser
 		_vendorAttribute = vendorAttribute;
 	}
 
+	/**
+	 * Sets the number of threads used by the parallel load options, such as
+	 * FLAG_PARALLEL_CSV.  Defaults to the number of available processors
+	 */
+	public void setThreadCount(
+	    int threadCount
+    ) {
+		_threadCount = Math.max( 1, threadCount );
+	}
+
+	public int getThreadCount()
+	{
+		return _threadCount;
+	}
+
+	/**
+	 * Passes each item to a sink as it is parsed.  With retainItems false the items
+	 * are not kept in the parse tree, so a large model can be loaded in bounded
+	 * memory by a caller that does not need duplicates merged or references
+	 * resolved.  The pages are still created, but are empty
+	 * @param sink Receives the items, or null to stop passing them on
+	 */
+	public void setItemSink(
+	    ItemSink sink,
+	    boolean  retainItems
+    ) {
+		_itemSink    = sink;
+		_retainItems = retainItems || sink == null;
+	}
+
+	/**
+	 * Sets the share of the maximum heap that may be in use, after garbage
+	 * collection, before the ATTRIBUTE and DOCUMENT pages are spilled to temporary
+	 * files between sheets.  Only used with FLAG_SPILL_PAGES.  Spilled pages are
+	 * read back when they are next iterated or a lookup finds a spilled key.  A
+	 * budget of 1 or more turns spilling off
+	 */
+	public void setHeapBudget(
+	    double budget
+    ) {
+		_memoryGovernor.setBudget( budget );
+	}
+
+	/**
+	 * @return The number of times a page was spilled to disk to stay within the heap
+	 *         budget
+	 */
+	public int getSpillCount()
+	{
+		return _memoryGovernor.getSpillCount();
+	}
+
+	/**
+	 * @return The number of Excel formula cells that were evaluated by the files
+	 *         loaded so far.  With FLAG_CACHED_FORMULAS this counts only the cells
+	 *         that had no result saved in the work book
+	 */
+	public int getEvaluationCount()
+	{
+		return _evaluationCount;
+	}
+
+	/**
+	 * @return The pool used with FLAG_STRING_POOL, whose counters show how many
+	 *         cells shared a String and the heap that saved.  Null if the flag is
+	 *         not set or nothing has been loaded
+	 */
+	public StringPool getStringPool()
+	{
+		return _stringPool;
+	}
+
+	/**
+	 * Creates the pool the first time a file is loaded with FLAG_STRING_POOL.  Files
+	 * may be staged on several threads
+	 */
+	private synchronized StringPool stringPool()
+	{
+		if( _stringPool == null )
+		{
+			_stringPool = new StringPool( StringPool.DEFAULT_SIZE );
+		}
+		return _stringPool;
+	}
+
+	/**
+	 * @return Queue depth and stall times for the sheets loaded so far with
+	 *         FLAG_PIPELINE
+	 */
+	public PipelineStats getPipelineStats()
+	{
+		return _pipelineStats;
+	}
+
 	@Override
 	public void export(
 	    String                fileName,
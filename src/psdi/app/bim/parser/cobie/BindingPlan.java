@@ -0,0 +1,285 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * The setters for the columns of a sheet.  A plan is built once for each item class
+ * and header layout and is shared by every file and parse that uses the same layout.
+ * The setters are generated with LambdaMetafactory, so setting a cell is a direct
+ * call rather than a reflective Method.invoke.
+ * <p>
+ * Plans are held per class with a ClassValue.  The generated setters and method handles
+ * reference the item class, so a cached plan keeps its item class, and the class loader
+ * of the item class, loaded for as long as this class is loaded.  Only the MAX_PLANS
+ * most recently used header layouts are kept for each class, so files with many
+ * different layouts do not grow the cache without limit.
+ */
+final class BindingPlan
+{
+	// Header layouts kept for each item class
+	private static final int MAX_PLANS = 16;
+
+	private static final ClassValue<Map<List<String>, BindingPlan>> PLANS =
+		new ClassValue<Map<List<String>, BindingPlan>>()
+	{
+		@Override
+		protected Map<List<String>, BindingPlan> computeValue(
+			Class<?> type
+		) {
+			return Collections.synchronizedMap( new LinkedHashMap<List<String>, BindingPlan>( MAX_PLANS * 2, 0.75f, true )
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+					Map.Entry<List<String>, BindingPlan> eldest
+				) {
+					return size() > MAX_PLANS;
+				}
+			});
+		}
+	};
+
+	private static final ClassValue<ConcurrentHashMap<String, Object>> SETTERS =
+		new ClassValue<ConcurrentHashMap<String, Object>>()
+	{
+		@Override
+		protected ConcurrentHashMap<String, Object> computeValue(
+			Class<?> type
+		) {
+			return new ConcurrentHashMap<String, Object>();
+		}
+	};
+
+	// Cached in SETTERS for a property the class has no setter for
+	private static final Object NO_SETTER = new Object();
+
+	private final BiConsumer<Item, String>[] _setters;
+
+	private BindingPlan(
+		Class<? extends Item> itemClass,
+		String[]              properties
+	) {
+		_setters = newSetters( properties.length );
+		for( int i = 0; i < properties.length; i++ )
+		{
+			if( properties[i] != null )
+			{
+				_setters[i] = getSetter( itemClass, properties[i] );
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Item, String>[] newSetters(
+		int length
+	) {
+		return (BiConsumer<Item, String>[])new BiConsumer<?, ?>[length];
+	}
+
+	/**
+	 * @param itemClass  Class created for each row
+	 * @param properties Property for each column, with spaces removed, or null for a
+	 *                   column that is not set on the item
+	 * @return The plan for the layout
+	 */
+	static BindingPlan get(
+		Class<? extends Item> itemClass,
+		String[]              properties
+	) {
+		Map<List<String>, BindingPlan> plans = PLANS.get( itemClass );
+		List<String> key = Arrays.asList( properties.clone() );
+		BindingPlan plan = plans.get( key );
+		if( plan == null )
+		{
+			// Built outside the lock; a plan built twice by racing threads is harmless
+			plan = new BindingPlan( itemClass, properties );
+			BindingPlan existing = plans.putIfAbsent( key, plan );
+			if( existing != null )
+			{
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	int size()
+	{
+		return _setters.length;
+	}
+
+	/**
+	 * @return false if the column has no property or the item has no setter for it
+	 */
+	boolean hasSetter(
+		int col
+	) {
+		return _setters[col] != null;
+	}
+
+	void set(
+		Item   item,
+		int    col,
+		String value
+	)
+		throws ParseException
+	{
+		try
+		{
+			_setters[col].accept( item, value );
+		}
+		catch( RuntimeException e )
+		{
+			throw new ParseException(e);
+		}
+	}
+
+	/**
+	 * @return The setter for a property, or null if the class does not have one
+	 */
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Item, String> getSetter(
+		Class<? extends Item> itemClass,
+		String                property
+	) {
+		ConcurrentHashMap<String, Object> setters = SETTERS.get( itemClass );
+		Object setter = setters.get( property );
+		if( setter == null )
+		{
+			setter = createSetter( itemClass, property );
+			setters.putIfAbsent( property, setter );
+		}
+		return setter == NO_SETTER ? null : (BiConsumer<Item, String>)setter;
+	}
+
+	private static Object createSetter(
+		Class<? extends Item> itemClass,
+		String                property
+	) {
+		Method method;
+		try
+		{
+			method = itemClass.getMethod( "set" + property, String.class );
+		}
+		catch( Exception e )
+		{
+			return NO_SETTER;
+		}
+
+		MethodHandle handle;
+		try
+		{
+			handle = MethodHandles.publicLookup().unreflect( method );
+		}
+		catch( IllegalAccessException e )
+		{
+			// Not a public class, so leave it to reflection as before
+			return new ReflectiveSetter( method );
+		}
+
+		try
+		{
+			CallSite site = LambdaMetafactory.metafactory( MethodHandles.lookup(), "accept",
+				MethodType.methodType( BiConsumer.class ),
+				MethodType.methodType( void.class, Object.class, Object.class ),
+				handle,
+				MethodType.methodType( void.class, itemClass, String.class ));
+			return site.getTarget().invoke();
+		}
+		catch( Throwable t )
+		{
+			// The generated class can't see the item class, such as when it comes
+			// from another class loader, so call through the handle instead
+			return new HandleSetter( handle.asType( MethodType.methodType( void.class, Item.class, String.class )));
+		}
+	}
+
+	private static final class HandleSetter
+		implements BiConsumer<Item, String>
+	{
+		private final MethodHandle _handle;
+
+		HandleSetter(
+			MethodHandle handle
+		) {
+			_handle = handle;
+		}
+
+		public void accept(
+			Item   item,
+			String value
+		) {
+			try
+			{
+				_handle.invokeExact( item, value );
+			}
+			catch( RuntimeException e )
+			{
+				throw e;
+			}
+			catch( Error e )
+			{
+				throw e;
+			}
+			catch( Throwable t )
+			{
+				throw new RuntimeException( t );
+			}
+		}
+	}
+
+	private static final class ReflectiveSetter
+		implements BiConsumer<Item, String>
+	{
+		private final Method _method;
+
+		ReflectiveSetter(
+			Method method
+		) {
+			_method = method;
+		}
+
+		public void accept(
+			Item   item,
+			String value
+		) {
+			try
+			{
+				_method.invoke( item, value );
+			}
+			catch( Exception e )
+			{
+				throw new RuntimeException( e );
+			}
+		}
+	}
+}
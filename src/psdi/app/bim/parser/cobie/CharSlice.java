@@ -0,0 +1,74 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+/**
+ * A reusable CharSequence over part of a char array.  The String is only built if
+ * toString is called, and is kept until the slice is reset
+ */
+final class   CharSlice
+    implements CharSequence
+{
+	private char[] _chars  = null;
+	private int    _start  = 0;
+	private int    _len    = 0;
+	private String _string = null;
+
+	CharSlice set(
+		char[] chars,
+		int    start,
+		int    len
+	) {
+		_chars  = chars;
+		_start  = start;
+		_len    = len;
+		_string = null;
+		return this;
+	}
+
+	public int length()
+	{
+		return _len;
+	}
+
+	public char charAt(
+		int index
+	) {
+		if( index < 0 || index >= _len )
+		{
+			throw new IndexOutOfBoundsException( Integer.toString( index ));
+		}
+		return _chars[_start + index];
+	}
+
+	public CharSequence subSequence(
+		int start,
+		int end
+	) {
+		return toString().subSequence( start, end );
+	}
+
+	public String toString()
+	{
+		if( _string == null )
+		{
+			_string = new String( _chars, _start, _len );
+		}
+		return _string;
+	}
+}
@@ -22,10 +22,22 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 public class CobieParser
 
@@ -33,6 +45,35 @@ public class CobieParser
 	private Parser	         _project	     = null;
 	private InputTokenizer   _inputTokenizer = null;
 	private InputFile	     _cobieFile	     = null;
+	private long             _flags          = 0;
+	private int              _threadCount    = 1;
+	private PipelineStats    _pipelineStats  = new PipelineStats();
+	private MemoryGovernor   _governor       = null;
+	private int              _evaluationCount = 0;
+	private String           _onlyTab        = null;
+	private ItemSink         _sink           = null;
+	private boolean          _retainItems    = true;
+	private StringPool       _stringPool     = null;
+
+	/**
+	 * Set by stage().  Holds what parse would have done to the parse tree, in order
+	 */
+	private ArrayList<Object> _staged        = null;
+
+	// Staged when parse would have put a page in the parse tree
+	private static final Object SHEET_END = new Object();
+
+	/**
+	 * Smallest number of rows handed to a thread when FLAG_PARALLEL_CSV is set.  Below
+	 * this the cost of scheduling a chunk is more than the binding it saves
+	 */
+	private static final int MIN_CHUNK_ROWS = 4096;
+
+	/**
+	 * Rows the reader hands to a binder at a time when FLAG_PIPELINE is set
+	 */
+	private static final int PIPELINE_BATCH_ROWS = 256;
+
 	/**
 	 * List of supported COBie Sheet names in the order to be processed
 	 */
@@ -58,14 +99,95 @@ public class CobieParser
 	    Parser       project,
 	    String       sheetName,
 	    InputFile    cobieFile
+    )
+	    throws ParseException
+	{
+		this( project, sheetName, cobieFile, 0 );
+	}
+
+	/**
+	 * @param flags Parser flags.  Only flags that affect how the input is read, such as
+	 *              FLAG_STREAM_EXCEL or FLAG_CACHED_FORMULAS, are used here.  The flags
+	 *              for the parse itself are passed to parse 
+	 */
+	public CobieParser(
+	    Parser       project,
+	    String       sheetName,
+	    InputFile    cobieFile,
+	    long         flags
     )
 	    throws ParseException
 	{
 		_cobieFile      = cobieFile;
 		_project        = project;
+		_flags          = flags;
 		_inputTokenizer = getTokenizer(sheetName, cobieFile);
 	}
 
+	/**
+	 * Parses one tab of a work book through its own cursor, for parseTabsParallel.
+	 * The tab is always staged
+	 */
+	private CobieParser(
+		CobieParser    parent,
+		InputTokenizer cursor,
+		String         tab
+	) {
+		_project        = parent._project;
+		_cobieFile      = parent._cobieFile;
+		_flags          = parent._flags;
+		_threadCount    = parent._threadCount;
+		_governor       = parent._governor;
+		_sink           = parent._sink;
+		_retainItems    = parent._retainItems;
+		_stringPool     = parent._stringPool;
+		_inputTokenizer = cursor;
+		_onlyTab        = tab;
+		_staged         = new ArrayList<Object>();
+	}
+
+	/**
+	 * @param sink        Receives each item as it is added, or null for none
+	 * @param retainItems false to only pass items to the sink.  The pages are
+	 *                    still created but stay empty
+	 */
+	public void setItemSink(
+		ItemSink sink,
+		boolean  retainItems
+	) {
+		_sink        = sink;
+		_retainItems = retainItems || sink == null;
+	}
+
+	/**
+	 * @param pool Shares Strings between cells with the same value, or null to create
+	 *             a String for every cell
+	 */
+	public void setStringPool(
+		StringPool pool
+	) {
+		_stringPool = pool;
+	}
+
+	/**
+	 * @param governor Spills pages between sheets when the heap is over budget
+	 */
+	void setMemoryGovernor(
+		MemoryGovernor governor
+	) {
+		_governor = governor;
+	}
+
+	/**
+	 * @param threadCount Number of threads used to bind rows when FLAG_PARALLEL_CSV
+	 *                    is set
+	 */
+	public void setThreadCount(
+		int threadCount
+	) {
+		_threadCount = Math.max( 1, threadCount );
+	}
+
 	public void parse(
 		Parser                  parser,
 	    IdFactory               idFactory,
@@ -78,18 +200,29 @@ public class CobieParser
 	{
 
 		if( _cobieFile.isExcel() )
-			list = _pageNames;
+			list = ( _onlyTab != null ) ? new String[] { _onlyTab } : _pageNames;
 
-		Page attributePage   = null;
-		attributePage = _project.getPage( Parser.SHEET_ATTRIBUTE );
-		if( attributePage == null )
+		// A staged parse leaves the parse tree alone until applyStaged
+		Page attributePage = null;
+		if( _staged == null )
 		{
-			attributePage = new Page( Parser.SHEET_ATTRIBUTE );
-			parseTree.put( attributePage.getPageName(), attributePage);
+			attributePage = openAttributePage( parseTree );
+		}
+
+		if(    _cobieFile.isExcel()
+			&& _onlyTab == null
+			&& (flags & Parser.FLAG_PARALLEL_TABS) != 0
+			&& _threadCount > 1
+			&& _inputTokenizer instanceof TabCursorSource )
+		{
+			parseTabsParallel( parser, idFactory, parseTree, packageName, flags );
+			checkMemory( parseTree );
+			return;
 		}
 
 		for( int pageIndex = 0; pageIndex < list.length; pageIndex++ )
 		{
+			checkMemory( parseTree );
 
 			String pageName = list[pageIndex].toUpperCase();
 
@@ -109,15 +242,26 @@ public class CobieParser
 				}
 			}
 
-			String className = packageName + pageName;
+			// Standard sheets are created by a registered factory rather than by
+			// finding the class by name
+			ItemFactory factory = null;
+			if( packageName.equals( Parser.ITEM_CLASS_PREFIX ))
+			{
+				factory = ItemFactory.getFactory( pageName );
+			}
+			if( factory == null )
+			{
+				String className = packageName + pageName;
 
-			@SuppressWarnings("unchecked")
-			Class<Item> pageClass = getClass(className);
+				@SuppressWarnings("unchecked")
+				Class<Item> pageClass = getClass(className);
+				factory = ItemFactory.forClass( pageClass );
+			}
 
-			Page page = _project.getPage(pageName);
-			if( page == null )
+			Page page = null;
+			if( _staged == null )
 			{
-				page = new Page( pageName );
+				page = openPage( pageName );
 			}
 
 			long rowCount = 0;
@@ -126,13 +270,20 @@ public class CobieParser
 			{
 				String values[] = _inputTokenizer.getRow();
 				rowCount ++;
-				page.setColumnNames(values);
+				if( _staged != null )
+				{
+					_staged.add( new StagedSheet( pageName, values ));
+				}
+				else
+				{
+					startSheet( page, values );
+				}
 				if( values == null )
 				{
 					continue;
 				}
-				String colNames[] = new String[values.length];
-				Method setters[]  = new Method[values.length];
+				String colNames[]   = new String[values.length];
+				String properties[] = new String[values.length];
 
 				for( int i = 0; i < values.length; i++ )
 				{
@@ -148,76 +299,82 @@ public class CobieParser
 						continue;
 					}
 					
-					try
-					{
-						colNames[i] = values[i];
-						values[i] = values[i].replace( " ", "" );
-						Method m = pageClass.getMethod("set" + values[i], String.class);
-						setters[i] = m;
-					}
-					catch( Exception e )
+					colNames[i] = values[i];
+					values[i] = values[i].replace( " ", "" );
+					properties[i] = values[i];
+				}
+
+				// Setters are looked up once per class and header layout
+				BindingPlan plan = BindingPlan.get( factory.getItemClass(), properties );
+				for( int i = 0; i < properties.length; i++ )
+				{
+					if(    properties[i] != null
+						&& !plan.hasSetter( i )
+						&& (flags & Parser.FLAG_CONVERT_EXTENSION_COLS) == 0 )
 					{
-						if( (flags & Parser.FLAG_CONVERT_EXTENSION_COLS) == 0 )
-						{
-							String params[] = { values[i], pageName };
-							if( _project.getLogger() != null )
-							{
-								_project.getLogger().error(Parser.WRN_MISSING_PROPERTY, params);
-							}
-						}
+						String params[] = { properties[i], pageName };
+						logError( Parser.WRN_MISSING_PROPERTY, params );
 					}
 				}
+				RowBinder binder = new RowBinder( pageName, factory, colNames, plan, flags );
+
+				if(    (flags & Parser.FLAG_PARALLEL_CSV) != 0
+					&& _threadCount > 1
+					&& _inputTokenizer instanceof MappedCsvInputTokenizer )
+				{
+					parseParallel( (MappedCsvInputTokenizer)_inputTokenizer, binder, parser, idFactory, pageName, page, attributePage, flags );
+					endSheet( parseTree, page );
+					continue;
+				}
+
+				if( (flags & Parser.FLAG_PIPELINE) != 0 && _threadCount > 1 )
+				{
+					parsePipelined( binder, parser, idFactory, pageName, page, attributePage, rowCount, flags );
+					endSheet( parseTree, page );
+					continue;
+				}
+
 				boolean rowError = false;
 				
+				// Data rows are read through a view that the tokenizer reuses, so strings
+				// are only created for the cells that are used
+				RowView row = null;
+
 				// try and get a row, inc rowCount always, set rowError on a caught exception
 				try {
-					values = _inputTokenizer.getRow();
+					row = _inputTokenizer.getRowView();
 				}
 				catch( CellReadException c) 
 				{
 					rowError = true;
 					int cellNum = c.getCellNum();
 					String params[] = { list[pageIndex].toUpperCase(), Long.toString(rowCount), colNames[cellNum], Integer.toString(cellNum) };
-					if( _project.getLogger() != null )
-					{
-						_project.getLogger().error(Parser.WRN_INVALID_CELL_VALUE, params);
-					}
+					logError( Parser.WRN_INVALID_CELL_VALUE, params );
 				}
 				finally {
 					rowCount ++;
 				}
 				
-				while( values != null )
+				// A row with a bad cell is skipped, but does not end the sheet
+				while( row != null || rowError )
 				{
 
 					// Try to detect and skip blank lines. A line of the same
 					// length
 					// as values should have
 					// only Commas
-					boolean content = false;
-					for( int i = 0; i < values.length; i++ )
-					{
-						if( values[i] != null && values[i].length() > 0 )
-						{
-							content = true;
-							break;
-						}
-					}
-					if( !content || rowError)
+					if( rowError || isBlank( row ))
 					{
 						// try and get a row, inc rowCount always, set rowError on a caught exception
 						try {
-							values = _inputTokenizer.getRow();
+							row = _inputTokenizer.getRowView();
 							rowError = false;  	// reset rowError on a successful read or it'll get stuck here
 						}
 						catch( CellReadException c) {
 							rowError = true;
 							int cellNum = c.getCellNum();
 							String params[] = { list[pageIndex].toUpperCase(), Long.toString(rowCount), colNames[cellNum], Integer.toString(cellNum) };
-							if( _project.getLogger() != null )
-							{
-								_project.getLogger().error(Parser.WRN_INVALID_CELL_VALUE, params);
-							}
+							logError( Parser.WRN_INVALID_CELL_VALUE, params );
 						}
 						finally {
 							rowCount ++;
@@ -225,78 +382,23 @@ public class CobieParser
 						continue;
 					}
 
-					Item item;
-					try
-					{
-						item = pageClass.newInstance();
-					}
-					catch( Exception e )
-					{
-						throw new ParseException(e);
-					}
-
-					item.setSourceFile( _cobieFile.getFileName() );
-					item.setGuidConversionFlag((flags & Parser.FLAG_CONVERT_GUID) != 0);
-					item.setUniqueIdConversionFlag((flags & Parser.FLAG_CONVERT_UNIQUE_IDs) != 0);
-					for( int i = 0; i < values.length && i < setters.length; i++ )
-					{
-						if( values[i] == null )
-						{
-							continue;
-						}
-						if( setters[i] != null  )
-						{
-							try
-							{
-								setters[i].invoke(item, values[i]);
-							}
-							catch( Exception e )
-							{
-								throw new ParseException(e);
-							}
-						}
-						else if( (flags & Parser.FLAG_CONVERT_EXTENSION_COLS) != 0 )
-						{
-							if(    values[i] != null 
-							    && values[i].length() > 0 
-								&& !values[i].equalsIgnoreCase( "n/a" ))
-							{
-								addAttribute( attributePage, item, pageName, colNames[i], values[i] );
-							}
-						}
-					}
-					boolean skip = item.skip( parser, flags );
-					if( !skip )
-					{
-						Item dup = page.getItem(item.getKey());
-						if(  dup == null || dup.isDuplicat( _project,  item ) )
-						{
-							item.setUniqueId(idFactory.getUniqueId(pageName));
-							page.put(item);
-						}
-					}
+					commit( binder.bind( row ), parser, idFactory, pageName, page, attributePage, flags );
 					
 					// try and get a row, inc rowCount always, set rowError on a caught exception
 					try {
-						values = _inputTokenizer.getRow();
+						row = _inputTokenizer.getRowView();
 						rowError = false;
 					}
 					catch( CellReadException c) {
 						rowError = true;
 						int cellNum = c.getCellNum();
 						String params[] = { list[pageIndex].toUpperCase(), Long.toString(rowCount), colNames[cellNum], Integer.toString(cellNum) };
-						if( _project.getLogger() != null )
-						{
-							_project.getLogger().error(Parser.WRN_INVALID_CELL_VALUE, params);
-						}
+						logError( Parser.WRN_INVALID_CELL_VALUE, params );
 					}
 					finally {
 						rowCount ++;
 					}
 				}
-				
-				Thread.yield();
-				System.gc();
 			}
 			catch( IOException e )
 			{
@@ -304,158 +406,1227 @@ public class CobieParser
 				e.printStackTrace();
 				throw new ParseException(Parser.ERR_FILE_READ_ERROR, params);
 			}
-			parseTree.put(page.getPageName(), page );
-		}
-	}
-	
-	public void close()
-	{
-		if( _inputTokenizer != null )
-		{
-			_inputTokenizer.close();
+			endSheet( parseTree, page );
 		}
-		_project	    = null;
-		_inputTokenizer	= null;
-		_cobieFile	    = null;
+		checkMemory( parseTree );
 	}
 
 	/**
-	 * 
-	 * @param className
-	 * @return
-	 * @throws ParseException
+	 * Parses the selected tabs of a work book at the same time, each through its own
+	 * cursor on its own thread.  The tabs are staged and then applied in _pageNames
+	 * order, so the result is the same as reading them one after another.  If a tab
+	 * fails, the tabs before it and the rows it staged are still applied
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	protected Class getClass(
-	    String className) throws ParseException
+	private void parseTabsParallel(
+		final Parser                  parser,
+		final IdFactory               idFactory,
+		final Hashtable<String, Page> parseTree,
+		final String                  packageName,
+		final long                    flags
+	)
+		throws ParseException
 	{
-		Class<Item> pageClass;
-		Class<Item> clazz;
+		ArrayList<CobieParser> tabs = new ArrayList<CobieParser>();
+		ExecutorService        pool = null;
 		try
 		{
-			clazz = (Class<Item>) Class.forName(className);
-			try
+			for( int i = 0; i < _pageNames.length; i++ )
 			{
-				pageClass = clazz;
+				if( _cobieFile.processTab( _pageNames[i] ))
+				{
+					InputTokenizer cursor = ((TabCursorSource)_inputTokenizer).newCursor();
+					tabs.add( new CobieParser( this, cursor, _pageNames[i].toUpperCase() ));
+				}
 			}
-			catch( Throwable t )
+			if( tabs.isEmpty() )
 			{
-				throw new ParseException(Parser.ERR_SHEET_INVALID_CLASS);
+				return;
 			}
-		}
-		catch( ClassNotFoundException e )
-		{
-			String params[] = { className };
-			throw new ParseException(Parser.ERR_SHEET_CLASS_NOT_FOUND, params, e);
-		}
 
-		return pageClass;
-	}
-
-	private InputTokenizer getTokenizer(
-	    String    type,
-	    InputFile cobieFile
-    ) 
-		throws ParseException
-	{
-		InputStream is = cobieFile.getFileStream();
+			pool = Executors.newFixedThreadPool( Math.min( _threadCount, tabs.size() ));
+			ArrayList<Future<ParseException>> pending = new ArrayList<Future<ParseException>>();
+			for( final CobieParser tab : tabs )
+			{
+				pending.add( pool.submit( new Callable<ParseException>()
+				{
+					public ParseException call()
+					{
+						try
+						{
+							tab.parse( parser, idFactory, parseTree, null, packageName, flags );
+							return null;
+						}
+						catch( ParseException e )
+						{
+							return e;
+						}
+						finally
+						{
+							tab.closeInput();
+						}
+					}
+				} ));
+			}
 
-		if( is != null )
+			for( int i = 0; i < tabs.size(); i++ )
+			{
+				ParseException error = pending.get( i ).get();
+				CobieParser    tab   = tabs.get( i );
+				if( _staged != null )
+				{
+					_staged.addAll( tab._staged );
+				}
+				else
+				{
+					tab.applyStaged( parser, idFactory, parseTree, flags );
+				}
+				_evaluationCount += tab.getEvaluationCount();
+				_pipelineStats.add( tab._pipelineStats );
+				if( error != null )
+				{
+					throw error;
+				}
+			}
+		}
+		catch( InterruptedException e )
 		{
-    		if( type.equals("EXCEL") )
-    		{
-    			String params[] = {cobieFile.getFileName() };
-    			throw new ParseException( Parser.ERR_EXCEL_NO_URL, params );
-    		}
-			return new CsvInputTokenizer(is);
+			Thread.currentThread().interrupt();
+			throw new ParseException( e );
 		}
-
-		String fileName = cobieFile.getFileName();
-		URL url = null;
-		try
-        {
-	        url = new URL( fileName );
-        }
-        catch( MalformedURLException e1 )
-        {
-	        // Do nothing - Not a URL will be processed as a file
-        }
-		FileInputStream fis = null;
-        if( url != null )
-        {
-    		if( type.equals("EXCEL") )
-    		{
-    			String params[] = {cobieFile.getFileName() };
-    			throw new ParseException( Parser.ERR_EXCEL_NO_URL, params );
-    		}
-        	try
-            {
-	            is = url.openStream();
-            }
-            catch( IOException e )
-            {
-    			String params[] = {cobieFile.getFileName(), msgFromException( e ) };
-    			throw new ParseException( Parser.ERR_BAD_URL, params );
-            }
-        }
-        else
-        {
-    		File cobieInputFile = new File( fileName );
-    		try
-    		{
-    			fis = new FileInputStream(cobieInputFile);
-    			is = fis;
-    		}
-    		catch( FileNotFoundException e )
-    		{
-    			String params[] = {cobieFile.getFileName()};
-    			throw new ParseException( Parser.MSG_FILE_NOT_FOUND_ERROR, params );
-    		}
-        }
-
-		if( type.equals("EXCEL") )
+		catch( ExecutionException e )
 		{
-			return new XlsInputTokenizer(cobieFile.getFileName(), fis );
+			if( e.getCause() instanceof RuntimeException )
+			{
+				throw (RuntimeException)e.getCause();
+			}
+			throw new ParseException( e.getCause() );
 		}
-		else
+		finally
 		{
-			return new CsvInputTokenizer(is);
+			if( pool != null )
+			{
+				// The cursors read the work book, so they must be done before it is closed
+				pool.shutdownNow();
+				try
+				{
+					while( !pool.awaitTermination( 1, TimeUnit.SECONDS ))
+					{
+						// Wait for the tab being read to reach the end of a row
+					}
+				}
+				catch( InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			for( CobieParser tab : tabs )
+			{
+				tab.closeInput();
+			}
 		}
 	}
-	
-	private void addAttribute(
-		Page   attributePage,
-		Item   item,
-		String sheetName,
-		String attribName,
-		String attribValue
+
+	/**
+	 * Spills cold pages if the heap is over budget.  Called between sheets, when no
+	 * rows are held outside the parse tree
+	 */
+	private void checkMemory(
+		Hashtable<String, Page> parseTree
 	) {
-		if( !(item instanceof ItemBase))
+		if( _governor != null && _staged == null )
 		{
-			return;
+			_governor.checkpoint( parseTree, _project.getLogger() );
 		}
-		if( attribName == null || attribValue == null )
+	}
+	
+	/**
+	 * @return true if the row has no cells with a value
+	 */
+	private static boolean isBlank(
+		RowView row
+	) {
+		for( int i = 0; i < row.size(); i++ )
 		{
-			return;
+			CharSequence value = row.get( i );
+			if( value != null && value.length() > 0 )
+			{
+				return false;
+			}
 		}
-		attribValue = attribValue.trim();
-		if( attribValue.length() == 0 )
+		return true;
+	}
+
+	/**
+	 * Same as "n/a".equalsIgnoreCase( value ) without creating a String
+	 */
+	private static boolean isNotApplicable(
+		CharSequence value
+	) {
+		return    value.length() == 3
+			   && Character.toLowerCase( value.charAt( 0 )) == 'n'
+			   && value.charAt( 1 ) == '/'
+			   && Character.toLowerCase( value.charAt( 2 )) == 'a';
+	}
+
+	/**
+	 * @return The number of formula cells that were evaluated while reading an Excel
+	 *         work book
+	 */
+	public int getEvaluationCount()
+	{
+		if( _inputTokenizer instanceof XlsInputTokenizer )
+		{
+			return _evaluationCount + ((XlsInputTokenizer)_inputTokenizer).getEvaluationCount();
+		}
+		return _evaluationCount;
+	}
+
+	/**
+	 * Records the changes parse makes to the parse tree instead of making them, so
+	 * files can be parsed on several threads.  The unique IDs, duplicate checks and
+	 * messages for the rows are left until applyStaged, which is called for each file
+	 * in the same order they would have been parsed
+	 */
+	void stage()
+	{
+		_staged = new ArrayList<Object>();
+	}
+
+	/**
+	 * Makes the changes recorded by a staged parse, including those made before
+	 * parse failed
+	 */
+	void applyStaged(
+		Parser                  parser,
+	    IdFactory               idFactory,
+	    Hashtable<String, Page> parseTree,
+	    long                    flags
+	) {
+		ArrayList<Object> staged = _staged;
+		_staged = null;
+		if( staged == null )
 		{
 			return;
 		}
-		ItemBase itemBase = (ItemBase)item;
-		ItemATTRIBUTE attrib = new ItemATTRIBUTE();
-		attrib.setSourceFile( _cobieFile.getFileName() );
-		attrib.setName( attribName.trim() );
-		attrib.setValue( attribValue );
-		attrib.setSheetName( sheetName );
-		attrib.setRowName( itemBase.getName() );
-		attrib.setCreatedOn( itemBase.getCreatedOn() );
-		attrib.setCreatedBy( itemBase.getCreatedBy() );
-		attrib.setExtSystem( itemBase.getExternalSystem() );
-		attrib.setExtObject( itemBase.getExternalObject() );
-		
-		attributePage.put( attrib );
+
+		Page attributePage = openAttributePage( parseTree );
+		Page page          = null;
+		for( Object entry : staged )
+		{
+			if( entry instanceof BoundRow )
+			{
+				commit( (BoundRow)entry, parser, idFactory, page.getPageName(), page, attributePage, flags );
+			}
+			else if( entry instanceof StagedSheet )
+			{
+				StagedSheet sheet = (StagedSheet)entry;
+				checkMemory( parseTree );
+				page = openPage( sheet._pageName );
+				startSheet( page, sheet._columnNames );
+			}
+			else if( entry instanceof StagedMessage )
+			{
+				logError( ((StagedMessage)entry)._key, ((StagedMessage)entry)._params );
+			}
+			else if( entry == SHEET_END )
+			{
+				endSheet( parseTree, page );
+			}
+		}
+		checkMemory( parseTree );
+	}
+
+	/**
+	 * Closes the input file.  The parser can still apply staged changes
+	 */
+	void closeInput()
+	{
+		if( _inputTokenizer != null )
+		{
+			_evaluationCount = getEvaluationCount();
+			_inputTokenizer.close();
+		}
+		_inputTokenizer = null;
+	}
+
+	private Page openAttributePage(
+		Hashtable<String, Page> parseTree
+	) {
+		Page attributePage = _project.getPage( Parser.SHEET_ATTRIBUTE );
+		if( attributePage == null )
+		{
+			attributePage = new Page( Parser.SHEET_ATTRIBUTE );
+			parseTree.put( attributePage.getPageName(), attributePage);
+		}
+		return attributePage;
+	}
+
+	private Page openPage(
+		String pageName
+	) {
+		Page page = _project.getPage(pageName);
+		if( page == null )
+		{
+			page = new Page( pageName );
+		}
+		return page;
+	}
+
+	private void startSheet(
+		Page     page,
+		String[] columnNames
+	) {
+		page.setColumnNames( columnNames );
+		if( _sink != null && columnNames != null )
+		{
+			_sink.onSheetStart( page.getPageName(), columnNames );
+		}
+	}
+
+	private void endSheet(
+		Hashtable<String, Page> parseTree,
+		Page                    page
+	) {
+		if( _staged != null )
+		{
+			_staged.add( SHEET_END );
+			return;
+		}
+		parseTree.put(page.getPageName(), page );
+		if( _sink != null )
+		{
+			_sink.onSheetEnd( page.getPageName() );
+		}
+	}
+
+	/**
+	 * Passes an item that has been committed to the sink and, unless items are not
+	 * retained, to its page
+	 */
+	private void addItem(
+		Page page,
+		Item item
+	) {
+		if( _sink != null )
+		{
+			_sink.onItem( page.getPageName(), item );
+		}
+		if( _retainItems )
+		{
+			if( _sink != null )
+			{
+				// The sink may keep the item, so the page must keep the same one
+				page.share();
+			}
+			page.put( item );
+		}
+	}
+
+	private void logError(
+		String key,
+		String params[]
+	) {
+		if( _staged != null )
+		{
+			_staged.add( new StagedMessage( key, params ));
+			return;
+		}
+		if( _project.getLogger() != null )
+		{
+			_project.getLogger().error( key, params );
+		}
+	}
+
+	/**
+	 * @return Queue depth and stall times for the sheets loaded with FLAG_PIPELINE
+	 */
+	public PipelineStats getPipelineStats()
+	{
+		return _pipelineStats;
+	}
+
+	public void close()
+	{
+		closeInput();
+		_project	    = null;
+		_inputTokenizer	= null;
+		_cobieFile	    = null;
+	}
+
+	/**
+	 * 
+	 * @param className
+	 * @return
+	 * @throws ParseException
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected Class getClass(
+	    String className) throws ParseException
+	{
+		Class<Item> pageClass;
+		Class<Item> clazz;
+		try
+		{
+			clazz = (Class<Item>) Class.forName(className);
+			try
+			{
+				pageClass = clazz;
+			}
+			catch( Throwable t )
+			{
+				throw new ParseException(Parser.ERR_SHEET_INVALID_CLASS);
+			}
+		}
+		catch( ClassNotFoundException e )
+		{
+			String params[] = { className };
+			throw new ParseException(Parser.ERR_SHEET_CLASS_NOT_FOUND, params, e);
+		}
+
+		return pageClass;
+	}
+
+	private InputTokenizer getTokenizer(
+	    String    type,
+	    InputFile cobieFile
+    ) 
+		throws ParseException
+	{
+		InputStream is = cobieFile.getFileStream();
+
+		if( is != null )
+		{
+    		if( type.equals("EXCEL") )
+    		{
+    			String params[] = {cobieFile.getFileName() };
+    			throw new ParseException( Parser.ERR_EXCEL_NO_URL, params );
+    		}
+			return new CsvInputTokenizer(is);
+		}
+
+		String fileName = cobieFile.getFileName();
+		URL url = null;
+		try
+        {
+	        url = new URL( fileName );
+        }
+        catch( MalformedURLException e1 )
+        {
+	        // Do nothing - Not a URL will be processed as a file
+        }
+		FileInputStream fis = null;
+        if( url != null )
+        {
+    		if( type.equals("EXCEL") )
+    		{
+    			String params[] = {cobieFile.getFileName() };
+    			throw new ParseException( Parser.ERR_EXCEL_NO_URL, params );
+    		}
+        	try
+            {
+	            is = url.openStream();
+            }
+            catch( IOException e )
+            {
+    			String params[] = {cobieFile.getFileName(), msgFromException( e ) };
+    			throw new ParseException( Parser.ERR_BAD_URL, params );
+            }
+        }
+        else
+        {
+    		File cobieInputFile = new File( fileName );
+    		if(    !type.equals("EXCEL") 
+    		    && !isGzip( fileName )
+    		    && ( _flags & ( Parser.FLAG_MAP_CSV | Parser.FLAG_PARALLEL_CSV )) != 0 )
+    		{
+    			try
+    			{
+    				return new MappedCsvInputTokenizer( cobieInputFile );
+    			}
+    			catch( IOException e )
+    			{
+    				// Not a charset that can be scanned in place, or the file can't be
+    				// mapped, so read it as a stream
+    			}
+    		}
+    		try
+    		{
+    			fis = new FileInputStream(cobieInputFile);
+    			is = fis;
+    		}
+    		catch( FileNotFoundException e )
+    		{
+    			String params[] = {cobieFile.getFileName()};
+    			throw new ParseException( Parser.MSG_FILE_NOT_FOUND_ERROR, params );
+    		}
+        }
+
+		if( type.equals("EXCEL") )
+		{
+			// Tabs that are not selected are never read, so they need not be decoded
+			ArrayList<String> useTabs  = new ArrayList<String>();
+			HashSet<String>   skipTabs = new HashSet<String>();
+			for( int i = 0; i < _pageNames.length; i++ )
+			{
+				if( cobieFile.processTab( _pageNames[i] ))
+				{
+					useTabs.add( _pageNames[i].toUpperCase() );
+				}
+				else
+				{
+					skipTabs.add( _pageNames[i].toUpperCase() );
+				}
+			}
+
+			if( fileName.toLowerCase().endsWith( ".xml" ))
+			{
+				// COBie XML is read one tab at a time from the file
+				try
+				{
+					fis.close();
+				}
+				catch( IOException e ) { /* Ignore */ }
+				return new CobieXmlInputTokenizer( fileName );
+			}
+			if( fileName.toLowerCase().endsWith( ".zip" ))
+			{
+				try
+				{
+					fis.close();
+				}
+				catch( IOException e ) { /* Ignore */ }
+				return new ZipCsvInputTokenizer( fileName, useTabs.toArray( new String[useTabs.size()] ));
+			}
+			if( (_flags & Parser.FLAG_STREAM_EXCEL) != 0 )
+			{
+				String ext = fileName.toLowerCase();
+				if( ext.endsWith( ".xlsx" ) || ext.endsWith( ".xls" ))
+				{
+					try
+					{
+						fis.close();
+					}
+					catch( IOException e ) { /* Ignore */ }
+					if( ext.endsWith( ".xlsx" ))
+					{
+						return new XlsxEventInputTokenizer( fileName );
+					}
+					return new XlsEventInputTokenizer( fileName );
+				}
+			}
+			return new XlsInputTokenizer(cobieFile.getFileName(), fis, skipTabs, _flags );
+		}
+		else if( isGzip( fileName ))
+		{
+			// Decompressed on its own thread while the rows are tokenized
+			try
+			{
+				return new CsvInputTokenizer( new PrefetchInputStream( new GZIPInputStream( is, 64 * 1024 ), fileName ));
+			}
+			catch( IOException e )
+			{
+				try
+				{
+					is.close();
+				}
+				catch( IOException e2 ) { /* Ignore */ }
+	        	String params[] = { fileName, type, msgFromException( e ) };
+	        	throw new ParseException( Parser.ERR_FILE_OPEN, params );
+			}
+		}
+		else
+		{
+			return new CsvInputTokenizer(is);
+		}
+	}
+
+	private static boolean isGzip(
+		String fileName
+	) {
+		return fileName.toLowerCase().endsWith( ".gz" );
+	}
+	
+	/**
+	 * @return An attribute for an extension column value, or null if there is nothing
+	 *         to record
+	 */
+	private ItemATTRIBUTE createAttribute(
+		Item   item,
+		String sheetName,
+		String attribName,
+		String attribValue
+	) {
+		if( !(item instanceof ItemBase))
+		{
+			return null;
+		}
+		if( attribName == null || attribValue == null )
+		{
+			return null;
+		}
+		attribValue = attribValue.trim();
+		if( attribValue.length() == 0 )
+		{
+			return null;
+		}
+		ItemBase itemBase = (ItemBase)item;
+		ItemATTRIBUTE attrib = new ItemATTRIBUTE();
+		attrib.setSourceFile( _cobieFile.getFileName() );
+		attrib.setName( attribName.trim() );
+		attrib.setValue( attribValue );
+		attrib.setSheetName( sheetName );
+		attrib.setRowName( itemBase.getName() );
+		attrib.setCreatedOn( itemBase.getCreatedOn() );
+		attrib.setCreatedBy( itemBase.getCreatedBy() );
+		attrib.setExtSystem( itemBase.getExternalSystem() );
+		attrib.setExtObject( itemBase.getExternalObject() );
+		return attrib;
+	}
+
+	/**
+	 * Adds a bound row to the parse tree.  This is always called in file order, so
+	 * duplicate handling and unique ID assignment do not depend on how the rows
+	 * were bound
+	 */
+	private void commit(
+		BoundRow  bound,
+		Parser    parser,
+		IdFactory idFactory,
+		String    pageName,
+		Page      page,
+		Page      attributePage,
+		long      flags
+	) {
+		if( _staged != null )
+		{
+			_staged.add( bound );
+			return;
+		}
+		if( bound._attributes != null )
+		{
+			for( ItemATTRIBUTE attrib : bound._attributes )
+			{
+				addItem( attributePage, attrib );
+			}
+		}
+		if( bound._extensions != null )
+		{
+			for( ExtensionAttribute attrib : bound._extensions )
+			{
+				if( _sink != null )
+				{
+					_sink.onItem( attributePage.getPageName(), attrib.materialize() );
+				}
+				if( _retainItems )
+				{
+					attributePage.putCompact( attrib );
+				}
+			}
+		}
+		Item item = bound._item;
+		boolean skip = item.skip( parser, flags );
+		if( !skip )
+		{
+			Item dup = page.findItem(item.getKey());
+			if(  dup == null || dup.isDuplicat( _project,  item ) )
+			{
+				item.setUniqueId(idFactory.getUniqueId(pageName));
+				addItem( page, item );
+			}
+		}
+	}
+
+	/**
+	 * Binds the rows of a memory mapped CSV file on a pool of threads.  The rows are
+	 * split into chunks using the tokenizer's row index and each chunk is tokenized
+	 * and bound by its own cursor.  Chunks are committed in file order, and only a
+	 * few chunks are in flight at a time so memory use does not grow with the file
+	 */
+	private void parseParallel(
+		MappedCsvInputTokenizer tokenizer,
+		final RowBinder         binder,
+		Parser                  parser,
+		IdFactory               idFactory,
+		String                  pageName,
+		Page                    page,
+		Page                    attributePage,
+		long                    flags
+	)
+		throws ParseException
+	{
+		int first     = tokenizer.getNextRow();
+		int last      = tokenizer.getRowCount();
+		int chunkRows = Math.max( MIN_CHUNK_ROWS, ( last - first ) / ( _threadCount * 4 ));
+
+		ExecutorService pool = Executors.newFixedThreadPool( _threadCount );
+		ArrayDeque<Future<List<BoundRow>>> pending = new ArrayDeque<Future<List<BoundRow>>>();
+		try
+		{
+			int next = first;
+			while( next < last || !pending.isEmpty() )
+			{
+				while( next < last && pending.size() < _threadCount * 2 )
+				{
+					final MappedCsvInputTokenizer cursor = new MappedCsvInputTokenizer( tokenizer, next, Math.min( last, next + chunkRows ));
+					pending.add( pool.submit( new Callable<List<BoundRow>>()
+					{
+						public List<BoundRow> call()
+							throws ParseException
+						{
+							return bindRows( cursor, binder );
+						}
+					} ));
+					next += chunkRows;
+				}
+				for( BoundRow bound : pending.remove().get() )
+				{
+					commit( bound, parser, idFactory, pageName, page, attributePage, flags );
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new ParseException( e );
+		}
+		catch( ExecutionException e )
+		{
+			if( e.getCause() instanceof ParseException )
+			{
+				throw (ParseException)e.getCause();
+			}
+			throw new ParseException( e.getCause() );
+		}
+		finally
+		{
+			// The cursors read the mapping, so they must be done before it is unmapped
+			pool.shutdownNow();
+			try
+			{
+				while( !pool.awaitTermination( 1, TimeUnit.SECONDS ))
+				{
+					// Wait for the chunks being bound to finish
+				}
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		tokenizer.seekRow( last );
+	}
+
+	/**
+	 * Binds the non blank rows left in a tokenizer
+	 */
+	private static List<BoundRow> bindRows(
+		MappedCsvInputTokenizer cursor,
+		RowBinder               binder
+	)
+		throws ParseException
+	{
+		List<BoundRow> rows = new ArrayList<BoundRow>();
+		RowView row = cursor.getRowView();
+		while( row != null )
+		{
+			if( !isBlank( row ))
+			{
+				rows.add( binder.bind( row ));
+			}
+			row = cursor.getRowView();
+		}
+		return rows;
+	}
+
+	/**
+	 * Loads the rest of the current tab as a pipeline.  A reader thread copies rows
+	 * from the tokenizer into batches and hands each batch to a pool of binder
+	 * threads.  The batches are also put on a bounded queue in file order, which this
+	 * thread takes from to commit the bound rows.  The queue limits how far the reader
+	 * can get ahead, so memory use does not grow with the sheet
+	 * @param firstRow Row number of the first row left in the tab, for messages
+	 */
+	private void parsePipelined(
+		final RowBinder binder,
+		Parser          parser,
+		IdFactory       idFactory,
+		String          pageName,
+		Page            page,
+		Page            attributePage,
+		final long      firstRow,
+		long            flags
+	)
+		throws ParseException, IOException
+	{
+		int binders = Math.max( 1, _threadCount - 1 );
+		final ExecutorService           pool  = Executors.newFixedThreadPool( binders );
+		final ArrayBlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>( binders * 4 );
+		final PipelineStats             stats = new PipelineStats();
+
+		Thread reader = new Thread( new Runnable()
+		{
+			public void run()
+			{
+				readBatches( binder, pool, queue, stats, firstRow );
+			}
+		}, "COBie reader " + pageName );
+		reader.setDaemon( true );
+		reader.start();
+
+		boolean done = false;
+		try
+		{
+			Batch batch;
+			do
+			{
+				long start = System.nanoTime();
+				batch = queue.take();
+				batch._done.await();
+				stats.addCommitterStall( System.nanoTime() - start );
+
+				if( batch._error != null )
+				{
+					rethrow( batch._error );
+				}
+				for( int i = 0; i < batch._rows.size(); i++ )
+				{
+					Object entry = batch._rows.get( i );
+					if( entry instanceof InvalidCell )
+					{
+						InvalidCell invalid = (InvalidCell)entry;
+						String params[] = { pageName, Long.toString( invalid._rowCount ), binder._colNames[invalid._cellNum], Integer.toString( invalid._cellNum ) };
+						logError( Parser.WRN_INVALID_CELL_VALUE, params );
+						continue;
+					}
+					commit( batch._bound[i], parser, idFactory, pageName, page, attributePage, flags );
+				}
+				if( batch._readError != null )
+				{
+					rethrow( batch._readError );
+				}
+			}
+			while( !batch._last );
+			done = true;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new ParseException( e );
+		}
+		finally
+		{
+			if( !done )
+			{
+				// Stops the reader at its next batch, before the tokenizer is closed
+				reader.interrupt();
+			}
+			pool.shutdownNow();
+			boolean interrupted = false;
+			while( reader.isAlive() )
+			{
+				try
+				{
+					reader.join();
+				}
+				catch( InterruptedException e )
+				{
+					interrupted = true;
+				}
+			}
+			if( interrupted )
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		_pipelineStats.add( stats );
+	}
+
+	/**
+	 * Reader side of parsePipelined.  Blank rows are dropped here and cells that can't
+	 * be read are queued in place of their row, so messages are logged in file order
+	 */
+	private void readBatches(
+		final RowBinder           binder,
+		ExecutorService           pool,
+		ArrayBlockingQueue<Batch> queue,
+		PipelineStats             stats,
+		long                      rowCount
+	) {
+		try
+		{
+			boolean last = false;
+			while( !last )
+			{
+				final Batch batch = new Batch();
+				while( !last && batch._rows.size() < PIPELINE_BATCH_ROWS )
+				{
+					RowView row;
+					try
+					{
+						row = _inputTokenizer.getRowView();
+					}
+					catch( CellReadException c )
+					{
+						batch._rows.add( new InvalidCell( rowCount, c.getCellNum() ));
+						continue;
+					}
+					catch( Throwable t )
+					{
+						// The rows already in the batch are committed before the error
+						batch._readError = t;
+						last = true;
+						continue;
+					}
+					finally
+					{
+						rowCount++;
+					}
+					if( row == null )
+					{
+						last = true;
+					}
+					else if( !isBlank( row ))
+					{
+						batch._rows.add( copyRow( row ));
+					}
+				}
+				batch._last = last;
+
+				stats.addBatch( batch._rows.size(), queue.size() );
+				pool.execute( new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							batch.bind( binder );
+						}
+						catch( Throwable t )
+						{
+							batch._error = t;
+						}
+						finally
+						{
+							batch._done.countDown();
+						}
+					}
+				} );
+				long start = System.nanoTime();
+				queue.put( batch );
+				stats.addReaderStall( System.nanoTime() - start );
+			}
+		}
+		catch( InterruptedException e )
+		{
+			// The committer has stopped
+		}
+		catch( Throwable t )
+		{
+			Batch batch = new Batch();
+			batch._error = t;
+			batch._last  = true;
+			batch._done.countDown();
+			try
+			{
+				queue.put( batch );
+			}
+			catch( InterruptedException e ) { /* The committer has stopped */ }
+		}
+	}
+
+	/**
+	 * @return A copy of a row that stays valid after the tokenizer moves on
+	 */
+	private static String[] copyRow(
+		RowView row
+	) {
+		String values[] = new String[row.size()];
+		for( int i = 0; i < values.length; i++ )
+		{
+			values[i] = row.getString( i );
+		}
+		return values;
+	}
+
+	/**
+	 * Rethrows an exception caught on the reader or a binder thread
+	 */
+	private static void rethrow(
+		Throwable t
+	)
+		throws ParseException, IOException
+	{
+		if( t instanceof ParseException )
+		{
+			throw (ParseException)t;
+		}
+		if( t instanceof IOException )
+		{
+			throw (IOException)t;
+		}
+		if( t instanceof RuntimeException )
+		{
+			throw (RuntimeException)t;
+		}
+		if( t instanceof Error )
+		{
+			throw (Error)t;
+		}
+		throw new ParseException( t );
+	}
+
+	/**
+	 * Creates items for the rows of one sheet.  A binder only changes the item it
+	 * creates, so rows can be bound on several threads at once
+	 */
+	private final class RowBinder
+	{
+		private final String      _pageName;
+		private final ItemFactory _factory;
+		private final String[]    _colNames;
+		private final BindingPlan _plan;
+		private final long        _bindFlags;
+		private final ExtensionAttribute.Column _columns[];
+		private final StringPool.Column         _pooled[];
+
+		RowBinder(
+			String      pageName,
+			ItemFactory factory,
+			String[]    colNames,
+			BindingPlan plan,
+			long        flags
+		) {
+			_pageName  = pageName;
+			_factory   = factory;
+			_colNames  = colNames;
+			_plan      = plan;
+			_bindFlags = flags;
+			if(    (flags & Parser.FLAG_CONVERT_EXTENSION_COLS) != 0
+				&& (flags & Parser.FLAG_COMPACT_ATTRIBUTES) != 0 )
+			{
+				_columns = new ExtensionAttribute.Column[colNames.length];
+				for( int i = 0; i < colNames.length; i++ )
+				{
+					if( colNames[i] != null && !plan.hasSetter( i ))
+					{
+						_columns[i] = new ExtensionAttribute.Column( _cobieFile.getFileName(), pageName,
+						                                             colNames[i].trim() );
+					}
+				}
+			}
+			else
+			{
+				_columns = null;
+			}
+			if( _stringPool != null )
+			{
+				_pooled = new StringPool.Column[colNames.length];
+				for( int i = 0; i < colNames.length; i++ )
+				{
+					_pooled[i] = _stringPool.column();
+				}
+			}
+			else
+			{
+				_pooled = null;
+			}
+		}
+
+		BoundRow bind(
+			RowView row
+		)
+			throws ParseException
+		{
+			Item item = _factory.create();
+			item.setSourceFile( _cobieFile.getFileName() );
+			item.setGuidConversionFlag((_bindFlags & Parser.FLAG_CONVERT_GUID) != 0);
+			item.setUniqueIdConversionFlag((_bindFlags & Parser.FLAG_CONVERT_UNIQUE_IDs) != 0);
+			BoundRow bound = new BoundRow( item );
+			for( int i = 0; i < row.size() && i < _plan.size(); i++ )
+			{
+				CharSequence value = row.get( i );
+				if( value == null )
+				{
+					continue;
+				}
+				if( _plan.hasSetter( i ))
+				{
+					_plan.set( item, i, toString( i, value ));
+				}
+				else if( (_bindFlags & Parser.FLAG_CONVERT_EXTENSION_COLS) != 0 )
+				{
+					if(    value.length() > 0 
+						&& !isNotApplicable( value ))
+					{
+						if( _columns == null )
+						{
+							bound.addAttribute( createAttribute( item, _pageName, _colNames[i], toString( i, value )));
+						}
+						else
+						{
+							bound.addExtension( _columns[i], toString( i, value ));
+						}
+					}
+				}
+			}
+			return bound;
+		}
+
+		private String toString(
+			int          col,
+			CharSequence value
+		) {
+			if( _pooled == null )
+			{
+				return value.toString();
+			}
+			return _pooled[col].intern( value );
+		}
+	}
+
+	/**
+	 * An item and the attributes created from its extension columns, waiting to be
+	 * committed
+	 */
+	private static final class BoundRow
+	{
+		private final Item                     _item;
+		private ArrayList<ItemATTRIBUTE>       _attributes = null;
+		private ArrayList<ExtensionAttribute>  _extensions = null;
+
+		BoundRow(
+			Item item
+		) {
+			_item = item;
+		}
+
+		void addAttribute(
+			ItemATTRIBUTE attrib
+		) {
+			if( attrib == null )
+			{
+				return;
+			}
+			if( _attributes == null )
+			{
+				_attributes = new ArrayList<ItemATTRIBUTE>();
+			}
+			_attributes.add( attrib );
+		}
+
+		/**
+		 * Same as addAttribute( createAttribute(...) ) in compact form
+		 */
+		void addExtension(
+			ExtensionAttribute.Column column,
+			String                    value
+		) {
+			if( column == null || !( _item instanceof ItemBase ))
+			{
+				return;
+			}
+			String trimmed = value.trim();
+			if( trimmed.length() == 0 )
+			{
+				return;
+			}
+			if( _extensions == null )
+			{
+				_extensions = new ArrayList<ExtensionAttribute>();
+			}
+			_extensions.add( new ExtensionAttribute( (ItemBase)_item, column, trimmed ));
+		}
+	}
+
+	/**
+	 * Rows passed from the reader to a binder and then to the committer.  Each entry
+	 * is a row, as a String[], or an InvalidCell.  The latch is released once the rows
+	 * are bound or binding fails.  _error is a binding error, and _readError an error
+	 * reading the row after the last one in the batch
+	 */
+	private static final class Batch
+	{
+		private final ArrayList<Object> _rows      = new ArrayList<Object>( PIPELINE_BATCH_ROWS );
+		private final CountDownLatch    _done      = new CountDownLatch( 1 );
+		private BoundRow[]              _bound     = null;
+		private boolean                 _last      = false;
+		private Throwable               _error     = null;
+		private Throwable               _readError = null;
+
+		void bind(
+			RowBinder binder
+		)
+			throws ParseException
+		{
+			_bound = new BoundRow[_rows.size()];
+			RowBuffer row = new RowBuffer();
+			for( int i = 0; i < _bound.length; i++ )
+			{
+				Object entry = _rows.get( i );
+				if( entry instanceof String[] )
+				{
+					String values[] = (String[])entry;
+					row.clear();
+					row.setSize( values.length );
+					for( int j = 0; j < values.length; j++ )
+					{
+						row.set( j, values[j] );
+					}
+					_bound[i] = binder.bind( row );
+				}
+			}
+		}
+	}
+
+	/**
+	 * A row that was skipped because a cell could not be read
+	 */
+	private static final class InvalidCell
+	{
+		private final long _rowCount;
+		private final int  _cellNum;
+
+		InvalidCell(
+			long rowCount,
+			int  cellNum
+		) {
+			_rowCount = rowCount;
+			_cellNum  = cellNum;
+		}
+	}
+
+	/**
+	 * The start of a sheet in a staged parse
+	 */
+	private static final class StagedSheet
+	{
+		private final String   _pageName;
+		private final String[] _columnNames;
+
+		StagedSheet(
+			String   pageName,
+			String[] columnNames
+		) {
+			_pageName    = pageName;
+			_columnNames = columnNames;
+		}
+	}
+
+	/**
+	 * A message logged by a staged parse
+	 */
+	private static final class StagedMessage
+	{
+		private final String   _key;
+		private final String[] _params;
+
+		StagedMessage(
+			String   key,
+			String[] params
+		) {
+			_key    = key;
+			_params = params;
+		}
 	}
 
 	public static String msgFromException(
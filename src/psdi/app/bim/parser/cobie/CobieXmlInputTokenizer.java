@@ -0,0 +1,530 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Hashtable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads COBie XML files with StAX, one tab at a time, so memory use does not depend
+ * on the size of the file.  Two layouts are supported:
+ * <ul>
+ * <li>COBie tables written as elements.  Each element named after a tab, such as
+ *     &lt;Facility&gt;, is a row.  Its attributes and its child elements that only
+ *     hold text are the fields, named by their local names.  Child elements with
+ *     element content, such as a nested list of spaces, are skipped.  Rows can be
+ *     anywhere in the document, so both a &lt;Facilities&gt; container and nested
+ *     layouts are read.  The header row is the names of all the fields used by the
+ *     rows of the tab, in the order they are first seen.</li>
+ * <li>Excel 2003 XML spreadsheets, where each Worksheet is a tab and its first row is
+ *     the header, the same as for an Excel work book.</li>
+ * </ul>
+ * Each call to setCurrentTab reads the file again from the start.  For the element
+ * layout the tab is read twice, once to find its columns and once for the rows.
+ */
+public class   CobieXmlInputTokenizer
+    implements InputTokenizer, TabCursorSource
+{
+	private static final String NS_SPREADSHEET = "urn:schemas-microsoft-com:office:spreadsheet";
+
+	private final String                     _fileName;
+	private final XMLInputFactory            _xmlFactory;
+
+	private InputStream                      _stream      = null;
+	private XMLStreamReader                  _reader      = null;
+	private IOException                      _tabError    = null;
+
+	// Upper case name of the current tab
+	private String                           _tab         = null;
+	private boolean                          _spreadsheet = false;
+
+	// Columns of the current tab for the element layout
+	private final ArrayList<String>          _columns     = new ArrayList<String>();
+	private final Hashtable<String, Integer> _columnIndex = new Hashtable<String, Integer>();
+	private boolean                          _headerRead  = false;
+
+	private final StringBuilder              _text        = new StringBuilder();
+	private final RowBuffer                  _view        = new RowBuffer();
+
+	public CobieXmlInputTokenizer(
+		String fileName
+	)
+		throws ParseException
+	{
+		_fileName   = fileName;
+		_xmlFactory = XMLInputFactory.newInstance();
+		_xmlFactory.setProperty( XMLInputFactory.SUPPORT_DTD, Boolean.FALSE );
+		_xmlFactory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE );
+		_xmlFactory.setProperty( XMLInputFactory.IS_COALESCING, Boolean.TRUE );
+
+		// Find the layout from the root element and report a bad file up front
+		try
+		{
+			open();
+			_spreadsheet =    nextStart()
+				           && _reader.getLocalName().equals( "Workbook" )
+				           && NS_SPREADSHEET.equals( _reader.getNamespaceURI() );
+		}
+		catch( IOException e )
+		{
+			close();
+			String params[] = { fileName, Parser.SHEET_EXCEL, CobieParser.msgFromException( e ) };
+			throw new ParseException( Parser.ERR_FILE_OPEN, params );
+		}
+		catch( XMLStreamException e )
+		{
+			close();
+			String params[] = { fileName, Parser.SHEET_EXCEL, CobieParser.msgFromException( e ) };
+			throw new ParseException( Parser.ERR_FILE_OPEN, params );
+		}
+		finally
+		{
+			closeReader();
+		}
+	}
+
+	/**
+	 * Each tab is read with its own pass over the file, so a cursor is just another
+	 * tokenizer for the file
+	 */
+	public InputTokenizer newCursor()
+		throws ParseException
+	{
+		return new CobieXmlInputTokenizer( _fileName );
+	}
+
+	public boolean setCurrentTab(
+	    String name
+    ) {
+		closeReader();
+		_tabError   = null;
+		_headerRead = false;
+		_columns.clear();
+		_columnIndex.clear();
+		if( name == null )
+		{
+			return false;
+		}
+		_tab = name.toUpperCase();
+
+		try
+		{
+			if( _spreadsheet )
+			{
+				return findWorksheet();
+			}
+
+			// First pass collects the columns used by the rows of the tab
+			open();
+			boolean found = false;
+			while( nextRowStart() )
+			{
+				found |= readRow( true );
+			}
+			closeReader();
+			if( !found )
+			{
+				return false;
+			}
+			open();
+		}
+		catch( Exception e )
+		{
+			// Reported on the first read so the caller sees it as a read error for the tab
+			_tabError = new IOException( CobieParser.msgFromException( e ), e );
+			closeReader();
+		}
+		return true;
+	}
+
+	public String[] getRow()
+		throws IOException
+	{
+		if( getRowView() == null )
+		{
+			return null;
+		}
+		return _view.toStrings();
+	}
+
+	public RowView getRowView()
+		throws IOException
+	{
+		if( _tabError != null )
+		{
+			IOException e = _tabError;
+			_tabError = null;
+			throw e;
+		}
+		_view.clear();
+		if( _reader == null )
+		{
+			return null;
+		}
+
+		try
+		{
+			if( _spreadsheet )
+			{
+				if( readSpreadsheetRow() )
+				{
+					return _view;
+				}
+			}
+			else if( !_headerRead )
+			{
+				_headerRead = true;
+				for( int i = 0; i < _columns.size(); i++ )
+				{
+					_view.set( i, _columns.get( i ));
+				}
+				return _view;
+			}
+			else
+			{
+				while( nextRowStart() )
+				{
+					if( readRow( false ))
+					{
+						return _view;
+					}
+					_view.clear();
+				}
+			}
+		}
+		catch( XMLStreamException e )
+		{
+			closeReader();
+			throw new IOException( CobieParser.msgFromException( e ), e );
+		}
+		closeReader();
+		return null;
+	}
+
+	public void close()
+	{
+		closeReader();
+	}
+
+	public String getFileName()
+	{
+		return _fileName;
+	}
+
+	private void open()
+		throws IOException, XMLStreamException
+	{
+		_stream = new BufferedInputStream( new FileInputStream( _fileName ));
+		_reader = _xmlFactory.createXMLStreamReader( _stream );
+	}
+
+	private void closeReader()
+	{
+		if( _reader != null )
+		{
+			try
+			{
+				_reader.close();
+			}
+			catch( XMLStreamException e ) { /* Ignore */ }
+		}
+		if( _stream != null )
+		{
+			try
+			{
+				_stream.close();
+			}
+			catch( IOException e ) { /* Ignore */ }
+		}
+		_reader = null;
+		_stream = null;
+	}
+
+	/**
+	 * Moves to the next start element
+	 * @return false at the end of the document
+	 */
+	private boolean nextStart()
+		throws XMLStreamException
+	{
+		while( _reader.hasNext() )
+		{
+			if( _reader.next() == XMLStreamConstants.START_ELEMENT )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves to the start of the next element named after the current tab
+	 * @return false at the end of the document
+	 */
+	private boolean nextRowStart()
+		throws XMLStreamException
+	{
+		while( nextStart() )
+		{
+			if( _reader.getLocalName().equalsIgnoreCase( _tab ))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the fields of the row element the reader is on, leaving the reader on its
+	 * end element.  When collect is true unknown field names are added to the columns,
+	 * otherwise the fields are stored in the row view
+	 * @return false if the element has no fields, in which case it is a field of
+	 *         another table with the same name as the tab, such as Space on Component
+	 */
+	private boolean readRow(
+		boolean collect
+	)
+		throws XMLStreamException
+	{
+		boolean hasFields = false;
+		for( int i = 0; i < _reader.getAttributeCount(); i++ )
+		{
+			String ns = _reader.getAttributeNamespace( i );
+			if( ns != null && ns.length() > 0 )
+			{
+				// Schema instance and other qualified attributes are not COBie fields
+				continue;
+			}
+			setField( _reader.getAttributeLocalName( i ), _reader.getAttributeValue( i ), collect );
+			hasFields = true;
+		}
+
+		while( true )
+		{
+			int event = _reader.next();
+			if( event == XMLStreamConstants.START_ELEMENT )
+			{
+				String name  = _reader.getLocalName();
+				String value = readText();
+				if( value != null )
+				{
+					setField( name, value.trim(), collect );
+					hasFields = true;
+				}
+			}
+			else if( event == XMLStreamConstants.END_ELEMENT )
+			{
+				return hasFields;
+			}
+		}
+	}
+
+	private void setField(
+		String  name,
+		String  value,
+		boolean collect
+	) {
+		Integer col = _columnIndex.get( name );
+		if( col == null )
+		{
+			if( !collect )
+			{
+				return;
+			}
+			col = Integer.valueOf( _columns.size() );
+			_columns.add( name );
+			_columnIndex.put( name, col );
+		}
+		if( !collect )
+		{
+			_view.set( col.intValue(), value );
+		}
+	}
+
+	/**
+	 * Reads the text of the element the reader is on, leaving the reader on its end
+	 * element
+	 * @return The text, or null if the element has child elements
+	 */
+	private String readText()
+		throws XMLStreamException
+	{
+		_text.setLength( 0 );
+		while( true )
+		{
+			int event = _reader.next();
+			switch( event )
+			{
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					_text.append( _reader.getTextCharacters(), _reader.getTextStart(), _reader.getTextLength() );
+					break;
+				case XMLStreamConstants.START_ELEMENT:
+					skipElement();		// The child element
+					skipElement();		// The rest of this element
+					return null;
+				case XMLStreamConstants.END_ELEMENT:
+					return _text.toString();
+			}
+		}
+	}
+
+	/**
+	 * Skips to the end element of the element the reader is in
+	 */
+	private void skipElement()
+		throws XMLStreamException
+	{
+		int depth = 1;
+		while( depth > 0 )
+		{
+			int event = _reader.next();
+			if( event == XMLStreamConstants.START_ELEMENT )
+			{
+				depth++;
+			}
+			else if( event == XMLStreamConstants.END_ELEMENT )
+			{
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * Opens the file and moves to the worksheet for the current tab.  Sheet names
+	 * are matched ignoring case, the same as for an Excel work book
+	 * @return false if there is no worksheet for the tab
+	 */
+	private boolean findWorksheet()
+		throws IOException, XMLStreamException
+	{
+		open();
+		while( nextStart() )
+		{
+			if(    _reader.getLocalName().equals( "Worksheet" )
+				&& _tab.equalsIgnoreCase( _reader.getAttributeValue( NS_SPREADSHEET, "Name" )))
+			{
+				return true;
+			}
+		}
+		closeReader();
+		return false;
+	}
+
+	/**
+	 * Reads the next Row of the current worksheet into the row view
+	 * @return false at the end of the worksheet
+	 */
+	private boolean readSpreadsheetRow()
+		throws XMLStreamException
+	{
+		while( _reader.hasNext() )
+		{
+			int event = _reader.next();
+			if( event == XMLStreamConstants.END_ELEMENT && _reader.getLocalName().equals( "Worksheet" ))
+			{
+				return false;
+			}
+			if( event != XMLStreamConstants.START_ELEMENT || !_reader.getLocalName().equals( "Row" ))
+			{
+				continue;
+			}
+
+			int col = 0;
+			while( true )
+			{
+				event = _reader.next();
+				if( event == XMLStreamConstants.END_ELEMENT )
+				{
+					// End of the row since cells are read to their end elements
+					return true;
+				}
+				if( event != XMLStreamConstants.START_ELEMENT )
+				{
+					continue;
+				}
+				if( !_reader.getLocalName().equals( "Cell" ))
+				{
+					skipElement();
+					continue;
+				}
+				String index = _reader.getAttributeValue( NS_SPREADSHEET, "Index" );
+				if( index != null )
+				{
+					col = Integer.parseInt( index.trim() ) - 1;
+				}
+				String merge = _reader.getAttributeValue( NS_SPREADSHEET, "MergeAcross" );
+				_view.set( col, readCellData() );
+				col += 1 + ( merge == null ? 0 : Integer.parseInt( merge.trim() ));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the text of the Data element of the Cell the reader is on, including any
+	 * formatted runs inside it, leaving the reader on the end element of the Cell
+	 */
+	private String readCellData()
+		throws XMLStreamException
+	{
+		_text.setLength( 0 );
+		int depth = 1;
+		int dataDepth = 0;
+		while( depth > 0 )
+		{
+			int event = _reader.next();
+			switch( event )
+			{
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					if( dataDepth == 0 && _reader.getLocalName().equals( "Data" ))
+					{
+						dataDepth = depth;
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if( depth == dataDepth )
+					{
+						dataDepth = -1;
+					}
+					depth--;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					if( dataDepth > 0 )
+					{
+						_text.append( _reader.getTextCharacters(), _reader.getTextStart(), _reader.getTextLength() );
+					}
+					break;
+			}
+		}
+		return _text.toString();
+	}
+}
@@ -12,40 +12,116 @@
 * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
 * See the License for the specific language governing permissions and
 * limitations under the License.
-* 
+*
 * @Author Doug Wood
 **/
 package psdi.app.bim.parser.cobie;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+/**
+ * Reads comma separated files.  The input is decoded a buffer at a time rather than
+ * a byte at a time.  A byte order mark at the start of the file selects UTF-8 or UTF-16,
+ * otherwise the default charset passed to the constructor is used.  If none is given
+ * the first buffer is checked with a strict UTF-8 decode.  The file is read as UTF-8
+ * if that succeeds, and otherwise as ISO-8859-1, which maps each byte to one character
+ * as reading a byte at a time did, so existing Latin-1 and cp1252 files read the same
+ * as before.  Malformed input later in the file is replaced rather than failing the
+ * load.
+ */
 public class CsvInputTokenizer implements InputTokenizer
 {
-	private InputStream _is;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private InputStream       _is;
+	private Charset           _charset;
+	// True if the charset is picked from the content when there is no byte order mark
+	private final boolean     _detect;
+	private CharsetDecoder    _decoder   = null;
+	// True if bytes below 0x80 are always a single ASCII character in _charset
+	private boolean           _asciiCompatible;
+
+	private final ByteBuffer  _bytes     = ByteBuffer.allocate( BUFFER_SIZE );
+	private final char[]      _chars     = new char[BUFFER_SIZE];
+	private final CharBuffer  _charBuf   = CharBuffer.wrap( _chars );
+	private int               _pos       = 0;
+	private int               _limit     = 0;
+	private boolean           _eof       = false;
+
+	// Tokens of the current row are stored one after another in _row.  _bounds holds
+	// the start and length of each trimmed token
+	private char[]            _row       = new char[1024];
+	private int               _rowLen    = 0;
+	private int               _tokStart  = 0;
+	private int[]             _bounds    = new int[64];
+	private int               _tokCount  = 0;
+	private CharSlice[]       _slices    = new CharSlice[32];
+	private final RowBuffer   _view      = new RowBuffer();
 
 	public CsvInputTokenizer(
 		InputStream is
 	) {
-		_is = is;
+		this( is, StandardCharsets.ISO_8859_1, true );
+	}
+
+	/**
+	 * @param is      CSV file contents
+	 * @param charset Charset used when the file does not start with a byte order mark
+	 */
+	public CsvInputTokenizer(
+		InputStream is,
+		Charset     charset
+	) {
+		this( is, charset, false );
+	}
+
+	private CsvInputTokenizer(
+		InputStream is,
+		Charset     charset,
+		boolean     detect
+	) {
+		_is      = is;
+		_charset = charset;
+		_detect  = detect;
+		_bytes.limit( 0 );
+	}
+
+	public String[] getRow()
+		throws IOException
+	{
+		RowView row = getRowView();
+		if( row == null )
+		{
+			return null;
+		}
+		return _view.toStrings();
 	}
-	
-	public String[] getRow() 
-		throws IOException 
+
+	public RowView getRowView()
+		throws IOException
 	{
-	    ArrayList<String> strings = new ArrayList<String>();
-	    StringBuilder sb = new StringBuilder();
+		_rowLen   = 0;
+		_tokStart = 0;
+		_tokCount = 0;
 
 	    int state = 0;
-     	int uc = _is.read();
+     	int uc = read();
      	if( uc == -1 )
      	{
+     		_view.clear();
      		return null;
      	}
      	char c = (char)uc;
      	boolean lineEnd = false;
-	    while( !lineEnd ) 
+	    while( !lineEnd )
 	    {
 	    	switch( state )
 	    	{
@@ -69,24 +145,26 @@ public class CsvInputTokenizer implements InputTokenizer
 		    		}
 		    		else				// Start normal token
 		    		{
-			            sb.append(c);
+			            append(c);
+			            scan( ',', '\n' );
 			            state = 1;
 		    		}
 		    		break;
 		    	case 1:					// Normal non quoted token
-		    		if( c == ',' )	
+		    		if( c == ',' )
 		    		{
 		    			state = 10;
 		    		}
 		    		else				// Start normal token
 		    		{
-			            sb.append(c);
+			            append(c);
+			            scan( ',', '\n' );
 		    		}
 		    		break;
 		    	case 2:					// Start of quoted String
 		    		if( c == '\n' )     // Skip over new lines inside of quotes
 		    		{
-		    	     	uc = _is.read();
+		    	     	uc = read();
 		    	     	if( uc == -1 )
 		    	     	{
 			    			lineEnd = true;
@@ -100,8 +178,9 @@ public class CsvInputTokenizer implements InputTokenizer
 		    		}
 		    		else				// Add character from quoted string
 		    		{
-			            sb.append(c);
-		    	     	uc = _is.read();
+			            append(c);
+			            scan( '"', '\n' );
+		    	     	uc = read();
 		    	     	if( uc == -1 )
 		    	     	{
 			    			lineEnd = true;
@@ -114,7 +193,7 @@ public class CsvInputTokenizer implements InputTokenizer
 		    		if( c == '"' )		// Second quite so escape
 		    		{
 		    			state = 2;
-			            sb.append(c);
+			            append(c);
 			    		break;
 		    		}
 		    		else				// Seen quoted string;
@@ -123,18 +202,17 @@ public class CsvInputTokenizer implements InputTokenizer
 		    			continue;
 		    		}
 		    	case 4:					// Seen quoted string throw away until comma
-		    		if( c == ',' )	
+		    		if( c == ',' )
 		    		{
 		    			state = 10;
 		    		}
 		    		break;
 		    	case 10:				// Token recognized;
-					strings.add(sb.toString().trim());
-					sb.delete(0, sb.length());
+		    		endToken();
 					state = 0;
 		    		continue;
 	    	}
-	     	uc = _is.read();
+	     	uc = read();
 	     	if( uc == -1 )
 	     	{
 	     		break;
@@ -145,13 +223,28 @@ public class CsvInputTokenizer implements InputTokenizer
     			break;
     		}
 	    }
-	    
-	    if (sb.length() > 0)
+
+	    if( _rowLen > _tokStart )
+	    {
+	    	endToken();
+	    }
+
+	    // The row buffer may have grown while the row was read, so the slices are
+	    // only pointed at it once the row is complete
+	    _view.clear();
+	    if( _slices.length < _tokCount )
 	    {
-	    	strings.add(sb.toString().trim());
-            sb.delete(0, sb.length());
+	    	_slices = Arrays.copyOf( _slices, Math.max( _tokCount, _slices.length * 2 ));
 	    }
-	    return strings.toArray(new String[strings.size()]);
+	    for( int i = 0; i < _tokCount; i++ )
+	    {
+	    	if( _slices[i] == null )
+	    	{
+	    		_slices[i] = new CharSlice();
+	    	}
+	    	_view.set( i, _slices[i].set( _row, _bounds[2*i], _bounds[2*i+1] ));
+	    }
+	    return _view;
 	}
 
     public boolean setCurrentTab(
@@ -170,4 +263,242 @@ public class CsvInputTokenizer implements InputTokenizer
         { /* Ignore */ }
 		_is       = null;
 	}
-}
\ No newline at end of file
+
+	private void append(
+		char c
+	) {
+		if( _rowLen == _row.length )
+		{
+			_row = Arrays.copyOf( _row, _row.length * 2 );
+		}
+		_row[_rowLen++] = c;
+	}
+
+	/**
+	 * Records the current token, trimmed the same way as String.trim, and starts the next
+	 */
+	private void endToken()
+	{
+		int start = _tokStart;
+		int end   = _rowLen;
+		while( start < end && _row[start] <= ' ' )
+		{
+			start++;
+		}
+		while( end > start && _row[end - 1] <= ' ' )
+		{
+			end--;
+		}
+		if( 2 * _tokCount + 2 > _bounds.length )
+		{
+			_bounds = Arrays.copyOf( _bounds, _bounds.length * 2 );
+		}
+		_bounds[2 * _tokCount]     = start;
+		_bounds[2 * _tokCount + 1] = end - start;
+		_tokCount++;
+		_tokStart = _rowLen;
+	}
+
+	/**
+	 * Appends buffered characters to the current token up to, but not including, the
+	 * next occurrence of either stop character.  Equivalent to appending them one at
+	 * a time from the state machine, but without a read() call per character
+	 */
+	private void scan(
+		char stop1,
+		char stop2
+	) {
+		char chars[] = _chars;
+		int  start   = _pos;
+		int  pos     = start;
+		int  limit   = _limit;
+		while( pos < limit )
+		{
+			char c = chars[pos];
+			if( c == stop1 || c == stop2 )
+			{
+				break;
+			}
+			pos++;
+		}
+		int count = pos - start;
+		if( count > 0 )
+		{
+			if( _rowLen + count > _row.length )
+			{
+				_row = Arrays.copyOf( _row, Math.max( _rowLen + count, _row.length * 2 ));
+			}
+			System.arraycopy( chars, start, _row, _rowLen, count );
+			_rowLen += count;
+			_pos     = pos;
+		}
+	}
+
+	private int read()
+		throws IOException
+	{
+		if( _pos >= _limit && !fill() )
+		{
+			return -1;
+		}
+		return _chars[_pos++];
+	}
+
+	/**
+	 * Decodes the next block of input into the character buffer
+	 * @return false at the end of the input
+	 */
+	private boolean fill()
+		throws IOException
+	{
+		_pos   = 0;
+		_limit = 0;
+		while( _limit == 0 )
+		{
+			if( _eof && !_bytes.hasRemaining() )
+			{
+				return false;
+			}
+			if( !_eof )
+			{
+				readBytes();
+			}
+			if( _decoder == null )
+			{
+				// Give the charset check a full buffer rather than the first few bytes
+				// of a slow stream
+				while( _detect && !_eof && _bytes.limit() < _bytes.capacity() )
+				{
+					readBytes();
+				}
+				startDecoder();
+			}
+			_charBuf.clear();
+			decodeAscii();
+			_decoder.decode( _bytes, _charBuf, _eof );
+			if( _eof && !_bytes.hasRemaining() )
+			{
+				_decoder.flush( _charBuf );
+			}
+			_limit = _charBuf.position();
+		}
+		return true;
+	}
+
+	/**
+	 * Tops up the byte buffer, keeping any partial multi byte sequence left by the
+	 * previous decode
+	 */
+	private void readBytes()
+		throws IOException
+	{
+		_bytes.compact();
+		try
+		{
+			while( _bytes.hasRemaining() )
+			{
+				int count = _is.read( _bytes.array(), _bytes.position(), _bytes.remaining() );
+				if( count < 0 )
+				{
+					_eof = true;
+					break;
+				}
+				_bytes.position( _bytes.position() + count );
+				// Decode what is available rather than blocking on a slow stream
+				if( count > 0 && _bytes.position() >= 4 )
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			_bytes.flip();
+		}
+	}
+
+	/**
+	 * Copies the leading run of 7 bit bytes straight to the character buffer.  Most
+	 * COBie content is ASCII so the decoder only sees the occasional non ASCII sequence
+	 */
+	private void decodeAscii()
+	{
+		if( !_asciiCompatible )
+		{
+			return;
+		}
+		byte bytes[]  = _bytes.array();
+		int  in       = _bytes.position();
+		int  inLimit  = _bytes.limit();
+		int  out      = _charBuf.position();
+		int  outLimit = _charBuf.limit();
+		char chars[]  = _chars;
+		while( in < inLimit && out < outLimit )
+		{
+			byte b = bytes[in];
+			if( b < 0 )
+			{
+				break;
+			}
+			chars[out++] = (char)b;
+			in++;
+		}
+		_bytes.position( in );
+		_charBuf.position( out );
+	}
+
+	/**
+	 * Picks the charset from the byte order mark, if there is one, and skips the mark.
+	 * Without a mark the content is checked if the charset was not given
+	 */
+	private void startDecoder()
+	{
+		int    pos  = _bytes.position();
+		int    len  = _bytes.remaining();
+		byte[] b    = _bytes.array();
+		if( len >= 3 && (b[pos] & 0xFF) == 0xEF && (b[pos+1] & 0xFF) == 0xBB && (b[pos+2] & 0xFF) == 0xBF )
+		{
+			_charset = StandardCharsets.UTF_8;
+			_bytes.position( pos + 3 );
+		}
+		else if( len >= 2 && (b[pos] & 0xFF) == 0xFE && (b[pos+1] & 0xFF) == 0xFF )
+		{
+			_charset = StandardCharsets.UTF_16BE;
+			_bytes.position( pos + 2 );
+		}
+		else if( len >= 2 && (b[pos] & 0xFF) == 0xFF && (b[pos+1] & 0xFF) == 0xFE )
+		{
+			_charset = StandardCharsets.UTF_16LE;
+			_bytes.position( pos + 2 );
+		}
+		else if( _detect && isUtf8( _bytes, _eof ))
+		{
+			_charset = StandardCharsets.UTF_8;
+		}
+		_asciiCompatible =    _charset.equals( StandardCharsets.UTF_8 )
+			               || _charset.equals( StandardCharsets.US_ASCII )
+			               || _charset.equals( StandardCharsets.ISO_8859_1 );
+		_decoder = _charset.newDecoder()
+			.onMalformedInput( CodingErrorAction.REPLACE )
+			.onUnmappableCharacter( CodingErrorAction.REPLACE );
+	}
+
+	/**
+	 * Decodes the remaining bytes as UTF-8, failing on any malformed sequence.  The
+	 * position of bytes is not changed.
+	 * @param complete True if bytes holds the rest of the input, so a sequence cut off
+	 *                 at the end is malformed rather than continued in the next buffer
+	 * @return true if the bytes are valid UTF-8
+	 */
+	static boolean isUtf8(
+		ByteBuffer bytes,
+		boolean    complete
+	) {
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput( CodingErrorAction.REPORT )
+			.onUnmappableCharacter( CodingErrorAction.REPORT );
+		// UTF-8 never decodes to more chars than it has bytes
+		CharBuffer chars = CharBuffer.allocate( Math.max( bytes.remaining(), 1 ));
+		return !decoder.decode( bytes.duplicate(), chars, complete ).isError();
+	}
+}
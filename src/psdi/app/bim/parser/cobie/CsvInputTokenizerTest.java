@@ -0,0 +1,200 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Checks the charset picked by CsvInputTokenizer and MappedCsvInputTokenizer for files
+ * without a byte order mark.  A UTF-8 file with non ASCII text must read as UTF-8 and
+ * a Latin-1 file as ISO-8859-1.  Also loads a CONTACT file with FLAG_MAP_CSV and
+ * checks that the mapping is released and the file can be deleted afterwards.  Exits
+ * with status 1 if any check fails.
+ */
+public class CsvInputTokenizerTest
+{
+	private static final String[][] ROWS =
+	{
+		{ "Name", "Description" },
+		{ "100", "Salle de réunion Été" },
+		{ "101", "Straße, über" },
+	};
+
+	private static int _checked    = 0;
+	private static int _mismatches = 0;
+
+	public static void main(
+		String[] args
+	)
+		throws Exception
+	{
+		check( StandardCharsets.UTF_8 );
+		check( StandardCharsets.ISO_8859_1 );
+		checkDelete();
+
+		System.out.println( _checked + " rows checked, " + _mismatches + " differences" );
+		if( _mismatches > 0 )
+		{
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Writes ROWS in charset and reads them back with both tokenizers
+	 */
+	private static void check(
+		Charset charset
+	)
+		throws Exception
+	{
+		File file = File.createTempFile( "rows", ".csv" );
+		file.deleteOnExit();
+		FileOutputStream os = new FileOutputStream( file );
+		for( int r = 0; r < ROWS.length; r++ )
+		{
+			StringBuilder line = new StringBuilder();
+			for( int c = 0; c < ROWS[r].length; c++ )
+			{
+				if( c > 0 )
+				{
+					line.append( ',' );
+				}
+				line.append( '"' ).append( ROWS[r][c] ).append( '"' );
+			}
+			line.append( "\r\n" );
+			os.write( line.toString().getBytes( charset ));
+		}
+		os.close();
+
+		FileInputStream is = new FileInputStream( file );
+		try
+		{
+			compare( charset + " stream", new CsvInputTokenizer( is ));
+		}
+		finally
+		{
+			is.close();
+		}
+		compare( charset + " mapped", new MappedCsvInputTokenizer( file ));
+	}
+
+	private static void compare(
+		String         label,
+		InputTokenizer tokenizer
+	)
+		throws Exception
+	{
+		try
+		{
+			for( int r = 0; r <= ROWS.length; r++ )
+			{
+				String[] expected = r < ROWS.length ? ROWS[r] : null;
+				String[] actual   = tokenizer.getRow();
+				_checked++;
+				if( !Arrays.equals( expected, actual ))
+				{
+					_mismatches++;
+					System.out.println( label + " row " + r + " expected "
+						+ Arrays.toString( expected ) + " got " + Arrays.toString( actual ));
+				}
+			}
+		}
+		finally
+		{
+			tokenizer.close();
+		}
+	}
+
+	/**
+	 * Loads a mapped CONTACT file and deletes it with deleteFiles.  On Linux the
+	 * mapping is also looked for in /proc/self/maps, since there a mapped file can
+	 * be deleted anyway
+	 */
+	private static void checkDelete()
+		throws Exception
+	{
+		File dir = File.createTempFile( "mapped", "" );
+		dir.delete();
+		dir.mkdir();
+		File workDir = new File( dir, "work" );
+		workDir.mkdir();
+		File file = new File( workDir, "CONTACT.csv" );
+		FileOutputStream os = new FileOutputStream( file );
+		os.write( ( "Email,CreatedBy,CreatedOn,Category,Company,Phone\r\n"
+			      + "a@example.com,a@example.com,2014-12-27T00:00:00,Architect,Example,555-0\r\n" ).getBytes( StandardCharsets.US_ASCII ));
+		os.close();
+
+		BIMProjectParser parser = new BIMProjectParser( Parser.FLAG_MAP_CSV );
+		parser.addFile( new InputFile( file.getPath(), Parser.SHEET_CONTACT ));
+		parser.execute();
+
+		_checked++;
+		if( isMapped( file ))
+		{
+			_mismatches++;
+			System.out.println( file + " is still mapped after the load" );
+		}
+		parser.deleteFiles( dir.getPath() );
+		_checked++;
+		if( file.exists() )
+		{
+			_mismatches++;
+			System.out.println( file + " was not deleted after the load" );
+		}
+		file.delete();
+		workDir.delete();
+		dir.delete();
+	}
+
+	private static boolean isMapped(
+		File file
+	)
+		throws Exception
+	{
+		File maps = new File( "/proc/self/maps" );
+		if( !maps.exists() )
+		{
+			return false;
+		}
+		String path = file.getCanonicalPath();
+		BufferedReader reader = new BufferedReader( new FileReader( maps ));
+		try
+		{
+			String line;
+			while( ( line = reader.readLine() ) != null )
+			{
+				if( line.endsWith( path ))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+}
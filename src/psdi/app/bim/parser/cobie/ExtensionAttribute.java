@@ -0,0 +1,95 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+/**
+ * An attribute created from an extension column, held in compact form until it is
+ * needed.  Only the row it came from, the column and the value are kept.  The row
+ * name, creation and external system values are taken from the row when the full
+ * ItemATTRIBUTE is created, so every attribute of a row shares them.
+ */
+final class ExtensionAttribute
+{
+	private final ItemBase _row;
+	private final Column   _column;
+	private final String   _value;
+
+	/**
+	 * @param value Value of the cell, already trimmed
+	 */
+	ExtensionAttribute(
+		ItemBase row,
+		Column   column,
+		String   value
+	) {
+		_row    = row;
+		_column = column;
+		_value  = value;
+	}
+
+	/**
+	 * @return A new ItemATTRIBUTE with the same values CobieParser creates for an
+	 *         extension column
+	 */
+	ItemATTRIBUTE materialize()
+	{
+		ItemATTRIBUTE attrib = new ItemATTRIBUTE();
+		attrib.setSourceFile( _column._sourceFile );
+		attrib.setName( _column._name );
+		attrib.setValue( _value );
+		attrib.setSheetName( _column._sheetName );
+		attrib.setRowName( _row.getName() );
+		attrib.setCreatedOn( _row.getCreatedOn() );
+		attrib.setCreatedBy( _row.getCreatedBy() );
+		attrib.setExtSystem( _row.getExternalSystem() );
+		attrib.setExtObject( _row.getExternalObject() );
+		return attrib;
+	}
+
+	/**
+	 * @return The key the ItemATTRIBUTE would have if it were created now, in upper
+	 *         case as Page stores it
+	 */
+	String getKey()
+	{
+		return ( _row.filterNA( _column._sheetName ) + ":" + _row.filterNA( _row.getName() ) + ":" + _column._name ).toUpperCase();
+	}
+
+	/**
+	 * An extension column of a sheet, shared by the attributes of every row
+	 */
+	static final class Column
+	{
+		private final String _sourceFile;
+		private final String _sheetName;
+		private final String _name;
+
+		/**
+		 * @param name Column header, already trimmed
+		 */
+		Column(
+			String sourceFile,
+			String sheetName,
+			String name
+		) {
+			_sourceFile = sourceFile;
+			_sheetName  = sheetName;
+			_name       = name;
+		}
+	}
+}
@@ -117,10 +117,14 @@ public class InputFile
 			_isExcel = true;
 			if( extension.equals( "xls" )) return;
 			if( extension.equals( "xlsx" )) return;
+			if( extension.equals( "xml" )) return;
+			// One CSV file per sheet
+			if( extension.equals( "zip" )) return;
 		}
 		else
 		{
 			if( extension.equals( "csv" )) return;
+			if( extension.equals( "gz" ) && _fileName.toLowerCase().endsWith( ".csv.gz" )) return;
 		}
 		
 		File file = new File( _fileName );
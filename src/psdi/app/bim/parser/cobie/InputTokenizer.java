@@ -23,5 +23,23 @@ public interface InputTokenizer
 {
 	public boolean setCurrentTab( String name );
 	public String[] getRow() throws IOException, ParseException;
+
+	/**
+	 * Reads the next row without allocating an array of Strings for it.  The returned
+	 * view is reused for every row, so it is only valid until the next call to getRow
+	 * or getRowView.  The tokenizers in this package override this.  The default wraps
+	 * getRow for other implementations
+	 * @return The row, or null at the end of the current tab
+	 */
+	public default RowView getRowView() throws IOException, ParseException
+	{
+		String values[] = getRow();
+		if( values == null )
+		{
+			return null;
+		}
+		return new RowBuffer( values );
+	}
+
 	public void close();
 }
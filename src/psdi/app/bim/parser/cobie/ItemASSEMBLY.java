@@ -17,12 +17,15 @@
 **/
 package psdi.app.bim.parser.cobie;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 
 public class   ItemASSEMBLY 
        extends ItemBase 
 {
+	private static final long serialVersionUID = 1L;
+
 	public static final String	COBIE_ASSEMBLY_TYPE_FIXED    = "Fixed";
 	public static final String	COBIE_ASSEMBLY_TYPE_OPTIONAL = "Optional";
 	public static final String	COBIE_ASSEMBLY_TYPE_INCLUDED = "Included";
@@ -45,6 +48,32 @@ public class   ItemASSEMBLY
 	private final LinkedList<Item> _childItemRef;
 	private String                 _parentName;
 	private Item                   _parentItemRef;
+
+	// The parent, then the children, on the sheet the assembly names
+	private static final ReferenceSpec<ItemASSEMBLY> MEMBER_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemASSEMBLY>( Parser.SHEET_ASSEMBLY, ItemASSEMBLY.class, null )
+	{
+		@Override
+		public String getTargetSheet(
+			ItemASSEMBLY assembly
+		) {
+			String sheet = assembly.getSheetName();
+			return ( sheet == null || sheet.length() == 0 ) ? null : sheet.toUpperCase();
+		}
+
+		public String[] getKeys(
+			ItemASSEMBLY assembly
+		) {
+			if( assembly._childern == null )
+			{
+				return new String[] { assembly.getParentName() };
+			}
+			String keys[] = new String[assembly._childern.length + 1];
+			keys[0] = assembly.getParentName();
+			System.arraycopy( assembly._childern, 0, keys, 1, assembly._childern.length );
+			return keys;
+		}
+	} );
 	private String                 _sheetName = "";
 
 	public ItemASSEMBLY()
@@ -57,64 +86,105 @@ public class   ItemASSEMBLY
 		Parser project, 
 		long   flags 
 	) {
-		super.resolveRerefences( project, flags );
+		applyReferences( project, flags, lookupReferences( project, flags, null ));
+	}
+
+	/**
+	 * Finds the parent and children of the assembly
+	 */
+	@Override
+	public ReferenceLookup lookupReferences(
+		Parser        project, 
+		long          flags,
+		ReferenceJoin join
+	) {
+		AssemblyLookup lookup = new AssemblyLookup();
+		lookupBaseReferences( project, lookup );
 
 		boolean badRef = false;
 		String[] params = { getPageId(), getName() };
 		if(  getSheetName() == null || getSheetName().length() == 0 )
 		{
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_SHEET_REF, params );
+			lookup.message( Parser.VALIDATE_MISSING_SHEET_REF, params );
 			badRef = true;
 		}
 
 		if(  getParentName() == null || getParentName().length() == 0 )
 		{
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_PARENT_REF, params );
+			lookup.message( Parser.VALIDATE_MISSING_PARENT_REF, params );
 			badRef = true;
 		}
 
 		if(  _childern == null || _childern.length == 0 )
 		{
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_CHILD_REF, params );
+			lookup.message( Parser.VALIDATE_MISSING_CHILD_REF, params );
 			badRef = true;
 		}
 
-	    if( badRef ) return;
+	    if( badRef ) return lookup;
 		
 		String params1[] = { getPageId(), getName(), getSheetName(), getParentName() }; 
-		Page page = project.getPage( _sheetName.toUpperCase() );
+		String sheet = _sheetName.toUpperCase();
+		Page page = project.getPage( sheet );
 		if( page == null )
 		{
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params1 );
-			return;
+			lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params1 );
+			return lookup;
 		}
-		else
+		String keys[] = MEMBER_REF.getKeys( this );
+		lookup._hasSheet = true;
+		lookup._parent   = MEMBER_REF.find( project, join, this, keys[0] );
+		if( lookup._parent == null )
 		{
-			_parentItemRef = page.getItem( getParentName() );
-			if( _parentItemRef == null )
-			{
-				project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params1 );
-			}
+			lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params1 );
 		}
 		
-		for( int i = 0; i < _childern.length; i++ )
+		for( int i = 1; i < keys.length; i++ )
 		{
-			if( isItemFiltered( project.filters(), getSheetName(),  _childern[i] ) )
+			if( isItemFiltered( project.filters(), getSheetName(),  keys[i] ) )
 			{
 				continue;
 			}
 
-			Item item = page.getItem( _childern[i] );
+			Item item = MEMBER_REF.find( project, join, this, keys[i] );
 			if( item == null )
 			{
-				String params2[] = { getPageId(), getName(), getSheetName(), _childern[i] }; 
-				project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params2 );
+				String params2[] = { getPageId(), getName(), getSheetName(), keys[i] }; 
+				lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params2 );
 				continue;
 			}
-			_childItemRef.add( item );
+			lookup._children.add( item );
+		}
+		return lookup;
+	}
+
+	@Override
+	public void applyReferences(
+		Parser          project,
+		long            flags,
+		ReferenceLookup found
+	) {
+		AssemblyLookup lookup = (AssemblyLookup)found;
+		lookup.log( project );
+		applyBaseReferences( lookup );
+		if( lookup._hasSheet )
+		{
+			_parentItemRef = lookup._parent;
+			_childItemRef.addAll( lookup._children );
 		}
 	}
 
+	/**
+	 * The references found by lookupReferences
+	 */
+	private static class AssemblyLookup
+		extends ReferenceLookup
+	{
+		private boolean               _hasSheet = false;
+		private Item                  _parent   = null;
+		private final ArrayList<Item> _children = new ArrayList<Item>();
+	}
+
 	@Override
 	public String getPageId() 
 	{
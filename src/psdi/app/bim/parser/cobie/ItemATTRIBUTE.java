@@ -18,10 +18,10 @@
 package psdi.app.bim.parser.cobie;
 
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.StringTokenizer;
 
 public class ItemATTRIBUTE extends ItemBase {
+	private static final long serialVersionUID = 1L;
 
 	private String _allowedValues = "";
 	private String _sheetName = "";
@@ -32,6 +32,26 @@ public class ItemATTRIBUTE extends ItemBase {
 	private ItemBase          _item;
 	private ItemAttributeType _type;
 
+	// The sheet and row the attribute belongs to
+	private static final ReferenceSpec<ItemATTRIBUTE> ROW_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemATTRIBUTE>( Parser.SHEET_ATTRIBUTE, ItemATTRIBUTE.class, null )
+	{
+		@Override
+		public String getTargetSheet(
+			ItemATTRIBUTE item
+		) {
+			String sheet = item.getSheetName();
+			return ( sheet == null || sheet.length() == 0 ) ? null : sheet.toUpperCase();
+		}
+
+		public String[] getKeys(
+			ItemATTRIBUTE item
+		) {
+			String row = item.getRowName();
+			return ( row == null || row.length() == 0 ) ? null : new String[] { row };
+		}
+	} );
+
 	@Override
 	public boolean equals(
 		Object o
@@ -49,11 +69,24 @@ public class ItemATTRIBUTE extends ItemBase {
 		Parser project, 
 		long flags 
 	) {
+		applyReferences( project, flags, lookupReferences( project, flags, null ));
+	}
+
+	/**
+	 * Finds the item the attribute belongs to
+	 */
+	@Override
+	public ReferenceLookup lookupReferences(
+		Parser        project, 
+		long          flags,
+		ReferenceJoin join
+	) {
+		ReferenceLookup lookup = new ReferenceLookup();
 		boolean badRef = false;
 		if(  getSheetName() == null || getSheetName().length() == 0 )
 		{
 			String[] params = { getPageId(), getName() };
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_SHEET_REF, params );
+			lookup.message( Parser.VALIDATE_MISSING_SHEET_REF, params );
 			badRef = true;
 		}
 		
@@ -62,58 +95,65 @@ public class ItemATTRIBUTE extends ItemBase {
 	    	if( !( getSheetName() != null && _sheetName.equalsIgnoreCase( Parser.SHEET_FACILITY ) ) )
 	    	{
 				String[] params = { getPageId(), getName() };
-				project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_ROW_REF, params );
+				lookup.message( Parser.VALIDATE_MISSING_ROW_REF, params );
 				badRef = true;
 	    	}
 		}
 	    
-	    if( badRef ) return;
+	    if( badRef ) return lookup;
 			
 		Page page = project.getPage( _sheetName.toUpperCase() );
 		if( page == null )
 		{
 			String params[] = { getPageId(), getName(), _sheetName, _rowName }; 
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
-			return;
+			lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
+			return lookup;
 		}
 		
 		// Filter out attributes where name == value as meaningless
 		if( getName().equals( _value ))
 		{
 			String params[] = { getName(), _sheetName, _rowName }; 
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_ATTRIB_VALUE_IS_NAME, params );
-			return;
+			lookup.message( Parser.VALIDATE_ATTRIB_VALUE_IS_NAME, params );
+			return lookup;
 		}
 
 		// Facility is a singleton so there may not be a valid row reference
 		Item item;
 		if( _sheetName.equalsIgnoreCase( Parser.SHEET_FACILITY ))
 		{
-			Iterator<Item> itr = page.iterator();
-			while( itr.hasNext() )
+			// There should only be one facility and there is no so take the first
+			// well formed instance and hope its right
+			ItemFACILITY facility = page.getFirstKeyedItem( ItemFACILITY.class );
+			if( facility != null )
 			{
-				item = itr.next();
-				if( item.getKey() != null && item.getKey().trim().length() > 0 )
-				{
-					if( item instanceof ItemFACILITY )
-					{
-						// There should only be one facility and there is no so take the first
-						// well formed instance and hope its right
-						_item = (ItemBase)item;
-						_item.addAttribute( this );
-						setParentRef( (ItemBase)item );
-						return;
-					}
-				}
+				lookup.setTarget( facility );
+				return lookup;
 			}
 		}
 		
-		item = page.getItem( _rowName );
-		if( item == null ) return;
-		if( !( item instanceof ItemBase )) return;
-		_item = (ItemBase)item;
-		_item.addAttribute( this );
-		setParentRef( (ItemBase)item );
+		String keys[] = ROW_REF.getKeys( this );
+		if( keys == null ) return lookup;
+		item = ROW_REF.find( project, join, this, keys[0] );
+		if( item == null ) return lookup;
+		if( !( item instanceof ItemBase )) return lookup;
+		lookup.setTarget( (ItemBase)item );
+		return lookup;
+	}
+
+	@Override
+	public void applyReferences(
+		Parser          project,
+		long            flags,
+		ReferenceLookup lookup
+	) {
+		lookup.log( project );
+		if( lookup.getTarget() != null )
+		{
+			_item = lookup.getTarget();
+			_item.addAttribute( this );
+			setParentRef( _item );
+		}
 	}
 
 	@Override
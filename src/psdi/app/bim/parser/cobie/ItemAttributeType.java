@@ -25,6 +25,8 @@ import java.util.Locale;
 
 public class ItemAttributeType extends ItemBase
 {
+	private static final long serialVersionUID = 1L;
+
 	public final static int UNSET   = 0;
 	public final static int ALN		= 1;
 	public final static int NUMERIC	= 2;
@@ -62,13 +64,23 @@ public class ItemAttributeType extends ItemBase
 	public boolean compareAndUpdate( 
 		Parser        project,
 		ItemATTRIBUTE attrib 
+	) {
+		return compareAndUpdate( project, attrib, attrib.getAllowedValueSet() );
+	}
+
+	/**
+	 * @param valueSet The allowed values of the attribute, already parsed
+	 */
+	public boolean compareAndUpdate( 
+		Parser          project,
+		ItemATTRIBUTE   attrib,
+		HashSet<String> valueSet
 	) {
 		String thisName = _parser.convertCase( getName() );
 		if( !thisName.equals( _parser.convertCase( attrib.getName() ) ) ) return false; 
 		this.inferType( attrib.getValue(), project.getLocale() );
 		_useWithSheet.add( attrib.getSheetName() );
 		updateDescritpion( attrib.getDescription() );
-		HashSet<String> valueSet = attrib.getAllowedValueSet();
 		if( valueSet == null  )
 		{
 			if( _valueSet == null ) return true;
@@ -17,6 +17,7 @@
 **/
 package psdi.app.bim.parser.cobie;
 
+import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigInteger;
@@ -25,8 +26,10 @@ import java.util.Hashtable;
 import java.util.Iterator;
 
 public abstract class ItemBase
-       implements     Item
+       implements     Item, Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 	private final static String guidString     = "^(\\{){0,1}[0-9a-fA-F]{8}\\-[0-9a-fA-F]{4}\\-[0-9a-fA-F]{4}\\-[0-9a-fA-F]{4}\\-[0-9a-fA-F]{12}(\\}){0,1}$";
 	// 65244c00-5eee-452a-b3b7-e73a38825f23-000f55ba
 	private final static String revitIIDString = "^(\\{){0,1}[0-9a-fA-F]{8}\\-[0-9a-fA-F]{4}\\-[0-9a-fA-F]{4}\\-[0-9a-fA-F]{4}\\-[0-9a-fA-F]{12}\\-[0-9a-fA-F]{8}(\\}){0,1}$";
@@ -384,7 +387,53 @@ public abstract class ItemBase
 	    Parser project,
 	    long    flags
     ) {
-		_facility = resolveFacilityRef( project );
+		ReferenceLookup lookup = new ReferenceLookup();
+		lookupBaseReferences( project, lookup );
+		lookup.log( project );
+		applyBaseReferences( lookup );
+	}
+
+	/**
+	 * Finds the items this item refers to without changing anything, so the items
+	 * of a page can be looked up on several threads.  The links are made by
+	 * applyReferences
+	 * @param join Keys already looked up for the page, or null
+	 * @return null if the item can only be resolved with resolveRerefences
+	 */
+	public ReferenceLookup lookupReferences(
+	    Parser        project,
+	    long          flags,
+	    ReferenceJoin join
+    ) {
+		return null;
+	}
+
+	/**
+	 * Logs the messages and makes the links found by lookupReferences.  Calling
+	 * both is the same as calling resolveRerefences
+	 * @param lookup The result of this item's lookupReferences
+	 */
+	public void applyReferences(
+	    Parser          project,
+	    long            flags,
+	    ReferenceLookup lookup
+    ) {
+		if( lookup == null )
+		{
+			resolveRerefences( project, flags );
+			return;
+		}
+		lookup.log( project );
+	}
+
+	/**
+	 * The lookup part of resolveRerefences for the facility and the creating contact
+	 */
+	protected void lookupBaseReferences(
+	    Parser          project,
+	    ReferenceLookup lookup
+    ) {
+		lookup.setFacility( resolveFacilityRef( project ));
 		if( _createdBy != null && _createdBy.length() > 0 )
 		{
 			Page page = project.getPage( Parser.SHEET_CONTACT );
@@ -393,41 +442,41 @@ public abstract class ItemBase
 				Item item = page.getItem( _createdBy );
 				if( item != null && item instanceof ItemCONTACT )
 				{
-					_creatingContact = (ItemCONTACT)item;
-					_creatingContact.makeAdminContact();
+					lookup.setCreatingContact( (ItemCONTACT)item );
 				}
 				else
 				{
 					String[] params = { getPageId(), getName(), Parser.SHEET_CONTACT, _createdBy };
-					project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
+					lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
 				}
 			}
 		}
 	}
+
+	/**
+	 * Links the facility and creating contact found by lookupBaseReferences
+	 */
+	protected void applyBaseReferences(
+	    ReferenceLookup lookup
+    ) {
+		_facility = lookup.getFacility();
+		if( lookup.getCreatingContact() != null )
+		{
+			_creatingContact = lookup.getCreatingContact();
+			_creatingContact.makeAdminContact();
+		}
+	}
 	
 	public ItemFACILITY resolveFacilityRef(
 		Parser project
 	) {
-	
 		Page page = project.getPage( Parser.SHEET_FACILITY );
 		if( page != null )
 		{
-			Item item;
-			Iterator<Item> itr = page.iterator();
-			while( itr.hasNext() )
-			{
-				item = itr.next();
-				if( item.getKey() != null && item.getKey().trim().length() > 0 )
-				{
-					if( item instanceof ItemFACILITY )
-					{
-						// There should only be one facility and there is no
-						// reference from floor to facility so take the first
-						// well formed instance and hope its right
-						return (ItemFACILITY) item;
-					}
-				}
-			}
+			// There should only be one facility and there is no
+			// reference from floor to facility so take the first
+			// well formed instance and hope its right
+			return page.getFirstKeyedItem( ItemFACILITY.class );
 		}
 		return null;		// Should never happen
 	}
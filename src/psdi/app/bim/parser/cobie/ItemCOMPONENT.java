@@ -20,6 +20,8 @@ package psdi.app.bim.parser.cobie;
 
 
 public class ItemCOMPONENT extends ItemBase {
+	private static final long serialVersionUID = 1L;
+
 	private String TypeName = "";
 	private String Space = "";
 	private String SerialNumber = "";
@@ -38,77 +40,103 @@ public class ItemCOMPONENT extends ItemBase {
 	private ItemFLOOR    _floor = null;
 	private ItemTYPE     _type  = null;
 
+	private static final ReferenceSpec<ItemCOMPONENT> SPACE_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemCOMPONENT>( Parser.SHEET_COMPONENT, ItemCOMPONENT.class, Parser.SHEET_SPACE )
+	{
+		public String[] getKeys(
+			ItemCOMPONENT component
+		) {
+			String space = component.getSpaceRef();
+			return ( space == null || space.length() == 0 ) ? null : new String[] { space };
+		}
+	} );
+
+	// Only used when the space is not found, so it is not joined
+	private static final ReferenceSpec<ItemCOMPONENT> FLOOR_REF =
+		new ReferenceSpec<ItemCOMPONENT>( Parser.SHEET_COMPONENT, ItemCOMPONENT.class, Parser.SHEET_FLOOR )
+	{
+		public String[] getKeys(
+			ItemCOMPONENT component
+		) {
+			String space = component.getSpace();
+			return ( space == null || space.length() == 0 ) ? null : new String[] { space };
+		}
+	};
+
+	private static final ReferenceSpec<ItemCOMPONENT> TYPE_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemCOMPONENT>( Parser.SHEET_COMPONENT, ItemCOMPONENT.class, Parser.SHEET_TYPE )
+	{
+		public String[] getKeys(
+			ItemCOMPONENT component
+		) {
+			String type = component.getTypeName();
+			return ( type == null || type.length() == 0 ) ? null : new String[] { type };
+		}
+	} );
+
 	@Override
     public void resolveRerefences(
 	    Parser project,
 	    long   flags
     ) {
-		super.resolveRerefences( project, flags );
+		applyReferences( project, flags, lookupReferences( project, flags, null ));
+	}
+
+	/**
+	 * Finds the space or floor, type and vendor of the component
+	 */
+	@Override
+	public ReferenceLookup lookupReferences(
+	    Parser        project,
+	    long          flags,
+	    ReferenceJoin join
+    ) {
+		ComponentLookup lookup = new ComponentLookup();
+		lookupBaseReferences( project, lookup );
 		String spaceName = getSpace();
 		
 		if( spaceName == null || spaceName.length() == 0 )
 		{
 			String[] params = { getPageId(), getName(), Parser.SHEET_SPACE };
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_REF, params );
+			lookup.message( Parser.VALIDATE_MISSING_REF, params );
 		}
-		else
+		else if( spaceName.split( "," ).length > 1 )
 		{
-			// Comma separated list of spaces have been observed.  Best we can do is to
-			// just use the first one
-			String spaces[] = spaceName.split( "," );
-			if( spaces.length > 1 )
-			{
-				String[] params = { getName() };
-				project.getLogger().dataIntegrityMessage( Parser.VALIDATE_SPACE_LIST, params );
-			}
-			if( spaces.length > 0 )
-			{
-				for( int i = 0; i < spaces.length; i++ )
-				{
-					spaceName = filterNA(spaces[i] );
-					if( spaceName.length() > 0 )
-					{
-						spaceName = spaces[i];
-						break;
-					}
-				}
-			}
+			String[] params = { getName() };
+			lookup.message( Parser.VALIDATE_SPACE_LIST, params );
 		}
 
-		if( spaceName != null && spaceName.length() > 0 )
+		String[] spaceKeys = SPACE_REF.getKeys( this );
+		if( spaceKeys != null )
 		{
 			Page spacePage = project.getPage( Parser.SHEET_SPACE );
 			if( spacePage != null )
 			{
-				Item item = spacePage.getItem( spaceName );
+				Item item = SPACE_REF.find( project, join, this, spaceKeys[0] );
 				if( item != null )
 				{
-					_space = (ItemSPACE)item;
-					_floor = ((ItemSPACE)item).getFloorReference();
-					_space.addComponent(this);
-					setParentRef( _space );
+					lookup._space = (ItemSPACE)item;
 				}
 				else
 				{
-					String[] params = { getPageId(), getName(), Parser.SHEET_SPACE, spaceName };
-					project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
+					String[] params = { getPageId(), getName(), Parser.SHEET_SPACE, spaceKeys[0] };
+					lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
 				}
 			}
 		}
 
 		// If the space isn't found, check and see if it references a level
 		// This isn't complaint with the spec, but it a nice thing to do
-		if( _space == null )
+		if( lookup._space == null && _space == null )
 		{
-			Page floorPage = project.getPage("FLOOR");
-			if( floorPage != null )
+			Page     floorPage = project.getPage("FLOOR");
+			String[] floorKeys = FLOOR_REF.getKeys( this );
+			if( floorPage != null && floorKeys != null )
 			{
-				Item item = floorPage.getItem( getSpace() );
+				Item item = FLOOR_REF.find( project, join, this, floorKeys[0] );
 				if( item != null )
 				{
-					_floor = (ItemFLOOR)item;
-					_floor.addComponent(this);
-					setParentRef( _floor );
+					lookup._floor = (ItemFLOOR)item;
 				}
 			}
 		}
@@ -116,18 +144,18 @@ public class ItemCOMPONENT extends ItemBase {
 		Page typePage = project.getPage("TYPE");
 		if( typePage != null )
 		{
-			if( getTypeName() != null && getTypeName().length() > 0 )
+			String[] typeKeys = TYPE_REF.getKeys( this );
+			if( typeKeys != null )
 			{
-				Item item = typePage.getItem( getTypeName() );
+				Item item = TYPE_REF.find( project, join, this, typeKeys[0] );
 				if( item != null )
 				{
-					_type = (ItemTYPE) item;
-					_type.addComponent(this);
+					lookup._type = (ItemTYPE) item;
 				}
 				else
 				{
-					String[] params = { getPageId(), getName(), Parser.SHEET_TYPE, getTypeName() };
-					project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
+					String[] params = { getPageId(), getName(), Parser.SHEET_TYPE, typeKeys[0] };
+					lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
 				}
 			}
 		}
@@ -140,18 +168,94 @@ public class ItemCOMPONENT extends ItemBase {
 			if( attribute != null )
 			{
 				String companyName = attribute.getValue();
-				_vendorReference = project.getCompanyFromContact( companyName );
-				if( _vendorReference == null )
+				lookup._hasVendor = true;
+				lookup._vendor    = project.getCompanyFromContact( companyName );
+				if( lookup._vendor == null )
 				{
 					String[] params = { getPageId(), getName(), Parser.SHEET_CONTACT, companyName };
-					project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
+					lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
 				}
-				else
+			}
+		}
+		return lookup;
+	}
+
+	@Override
+	public void applyReferences(
+	    Parser          project,
+	    long            flags,
+	    ReferenceLookup found
+    ) {
+		ComponentLookup lookup = (ComponentLookup)found;
+		lookup.log( project );
+		applyBaseReferences( lookup );
+		if( lookup._space != null )
+		{
+			_space = lookup._space;
+			_floor = _space.getFloorReference();
+			_space.addComponent(this);
+			setParentRef( _space );
+		}
+		if( lookup._floor != null )
+		{
+			_floor = lookup._floor;
+			_floor.addComponent(this);
+			setParentRef( _floor );
+		}
+		if( lookup._type != null )
+		{
+			_type = lookup._type;
+			_type.addComponent(this);
+		}
+		if( lookup._hasVendor )
+		{
+			_vendorReference = lookup._vendor;
+			if( _vendorReference != null )
+			{
+				_vendorReference.makeTypeContact();
+			}
+		}
+	}
+
+	/**
+	 * Comma separated list of spaces have been observed.  Best we can do is to
+	 * just use the first one
+	 * @return The space the component refers to
+	 */
+	private String getSpaceRef()
+	{
+		String spaceName = getSpace();
+		if( spaceName == null || spaceName.length() == 0 )
+		{
+			return spaceName;
+		}
+		String spaces[] = spaceName.split( "," );
+		if( spaces.length > 0 )
+		{
+			for( int i = 0; i < spaces.length; i++ )
+			{
+				spaceName = filterNA(spaces[i] );
+				if( spaceName.length() > 0 )
 				{
-					_vendorReference.makeTypeContact();
+					spaceName = spaces[i];
+					break;
 				}
 			}
 		}
+		return spaceName;
+	}
+
+	/**
+	 * The references found by lookupReferences
+	 */
+	private static class ComponentLookup
+		extends ReferenceLookup
+	{
+		private ItemSPACE   _space     = null;
+		private ItemFLOOR   _floor     = null;
+		private ItemTYPE    _type      = null;
+		private boolean     _hasVendor = false;
+		private ItemCONTACT _vendor    = null;
 	}
 	
 	/**
@@ -21,6 +21,8 @@ public class ItemCONTACT
     extends
         ItemBase
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _email;
 	private String _company;
 	private String _phone;
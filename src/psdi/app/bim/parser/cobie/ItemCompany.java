@@ -23,6 +23,8 @@ import java.util.Hashtable;
 public class ItemCompany
     extends ItemBase
 {
+	private static final long serialVersionUID = 1L;
+
 	private boolean isManufacturue = false;
 
 	private final Hashtable<String, ItemCONTACT> _contacts = new Hashtable<String, ItemCONTACT>();
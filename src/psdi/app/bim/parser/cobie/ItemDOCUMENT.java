@@ -17,9 +17,9 @@
 **/
 package psdi.app.bim.parser.cobie;
 
-import java.util.Iterator;
 
 public class ItemDOCUMENT extends ItemBase {
+	private static final long serialVersionUID = 1L;
 
 	private String _createdOn = "";
 	private String _category = "";
@@ -33,6 +33,26 @@ public class ItemDOCUMENT extends ItemBase {
 
 	private ItemBase _item;		// Referenced item
 
+	// The sheet and row the document belongs to
+	private static final ReferenceSpec<ItemDOCUMENT> ROW_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemDOCUMENT>( Parser.SHEET_DOCUMENT, ItemDOCUMENT.class, null )
+	{
+		@Override
+		public String getTargetSheet(
+			ItemDOCUMENT item
+		) {
+			String sheet = item.getSheetName();
+			return ( sheet == null || sheet.length() == 0 ) ? null : sheet.toUpperCase();
+		}
+
+		public String[] getKeys(
+			ItemDOCUMENT item
+		) {
+			String row = item.getRowName();
+			return ( row == null || row.length() == 0 ) ? null : new String[] { row };
+		}
+	} );
+
 	public String getKey() {
 		return _sheetName + ":" + _rowName + ":" + getName();
 	}
@@ -47,55 +67,76 @@ public class ItemDOCUMENT extends ItemBase {
 		Parser project, 
 		long flags 
 	) {
+		applyReferences( project, flags, lookupReferences( project, flags, null ));
+	}
+
+	/**
+	 * Finds the item the document belongs to
+	 */
+	@Override
+	public ReferenceLookup lookupReferences(
+		Parser        project, 
+		long          flags,
+		ReferenceJoin join
+	) {
+		ReferenceLookup lookup = new ReferenceLookup();
 		if(  getSheetName() == null || getSheetName().length() == 0 )
 		{
 			String[] params = { Parser.SHEET_DOCUMENT, getName() };
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_SHEET_REF, params );
-			return;
+			lookup.message( Parser.VALIDATE_MISSING_SHEET_REF, params );
+			return lookup;
 		}
 
 		Page page = project.getPage( _sheetName.toUpperCase() );
 		if( page == null )
 		{
 			String params[] = { getPageId(), getName(), _sheetName, _rowName }; 
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
-			return;
+			lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
+			return lookup;
 		}
 
 		// Facility is a singleton so there may not be a valid row reference
 		Item item;
 		if( _sheetName.equalsIgnoreCase( Parser.SHEET_FACILITY ))
 		{
-			Iterator<Item> itr = page.iterator();
-			while( itr.hasNext() )
+			// There should only be one facility and there is no so take the first
+			// well formed instance and hope its right
+			ItemFACILITY facility = page.getFirstKeyedItem( ItemFACILITY.class );
+			if( facility != null )
 			{
-				item = itr.next();
-				if( item.getKey() != null && item.getKey().trim().length() > 0 )
-				{
-					if( item instanceof ItemFACILITY )
-					{
-						// There should only be one facility and there is no so take the first
-						// well formed instance and hope its right
-						_item = (ItemBase)item;
-						_item.addDocument( this );
-						return;
-					}
-				}
+				lookup.setTarget( facility );
+				return lookup;
 			}
 		}
 		
 	    if( getRowName()   == null || getRowName().length() == 0 )
 		{
 			String[] params = { Parser.SHEET_DOCUMENT, getName() };
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_MISSING_ROW_REF, params );
-			return;
+			lookup.message( Parser.VALIDATE_MISSING_ROW_REF, params );
+			return lookup;
 		}
 			
-		item = page.getItem( _rowName );
-		if( item == null ) return;
-		if( !( item instanceof ItemBase )) return;
-		_item = (ItemBase)item;
-		_item.addDocument( this );
+		String keys[] = ROW_REF.getKeys( this );
+		if( keys == null ) return lookup;
+		item = ROW_REF.find( project, join, this, keys[0] );
+		if( item == null ) return lookup;
+		if( !( item instanceof ItemBase )) return lookup;
+		lookup.setTarget( (ItemBase)item );
+		return lookup;
+	}
+
+	@Override
+	public void applyReferences(
+		Parser          project,
+		long            flags,
+		ReferenceLookup lookup
+	) {
+		lookup.log( project );
+		if( lookup.getTarget() != null )
+		{
+			_item = lookup.getTarget();
+			_item.addDocument( this );
+		}
 	}
 	
 	
@@ -22,6 +22,8 @@ import java.util.Hashtable;
 
 public class ItemFACILITY extends ItemSpaces 
 {
+	private static final long serialVersionUID = 1L;
+
 	private String DateTimeStamp = "";
 	private String ProjectName = "";
 	private String SiteName = "";
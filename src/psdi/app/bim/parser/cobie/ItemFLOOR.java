@@ -21,6 +21,7 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 
 public class ItemFLOOR extends ItemSpaces {
+	private static final long serialVersionUID = 1L;
 
 	private String DateTimeStamp = "";
 	private String Elevation     = "";
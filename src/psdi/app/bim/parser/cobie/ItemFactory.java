@@ -0,0 +1,144 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Creates the item for each row of a sheet.  Factories for the standard COBie sheets
+ * are registered when this class is loaded, so their rows are created without
+ * reflection.  Applications can replace the factory of a standard sheet with one that
+ * creates a subclass.  Only the sheets the parsers already load are read, so a
+ * factory registered for any other sheet name is never used.
+ * <p>
+ * Sheets with no registered factory, and sheets loaded with a package other than
+ * Parser.ITEM_CLASS_PREFIX, fall back to finding the item class by name.
+ */
+public final class ItemFactory
+{
+	private static final ConcurrentHashMap<String, ItemFactory> _factories = new ConcurrentHashMap<String, ItemFactory>();
+
+	static
+	{
+		register( Parser.SHEET_FACILITY, ItemFACILITY.class, ItemFACILITY::new );
+		register( Parser.SHEET_FLOOR, ItemFLOOR.class, ItemFLOOR::new );
+		register( Parser.SHEET_SPACE, ItemSPACE.class, ItemSPACE::new );
+		register( Parser.SHEET_TYPE, ItemTYPE.class, ItemTYPE::new );
+		register( Parser.SHEET_COMPONENT, ItemCOMPONENT.class, ItemCOMPONENT::new );
+		register( Parser.SHEET_ZONE, ItemZONE.class, ItemZONE::new );
+		register( Parser.SHEET_SYSTEM, ItemSYSTEM.class, ItemSYSTEM::new );
+		register( Parser.SHEET_CONTACT, ItemCONTACT.class, ItemCONTACT::new );
+		register( Parser.SHEET_JOB, ItemJOB.class, ItemJOB::new );
+		register( Parser.SHEET_RESOURCE, ItemRESOURCE.class, ItemRESOURCE::new );
+		register( Parser.SHEET_SPARE, ItemSPARE.class, ItemSPARE::new );
+		register( Parser.SHEET_ASSEMBLY, ItemASSEMBLY.class, ItemASSEMBLY::new );
+		register( Parser.SHEET_ATTRIBUTE, ItemATTRIBUTE.class, ItemATTRIBUTE::new );
+		register( Parser.SHEET_DOCUMENT, ItemDOCUMENT.class, ItemDOCUMENT::new );
+		register( Parser.SHEET_ISSUE, ItemISSUE.class, ItemISSUE::new );
+	}
+
+	private final Class<? extends Item>    _itemClass;
+	private final Supplier<? extends Item> _supplier;
+
+	private ItemFactory(
+		Class<? extends Item>    itemClass,
+		Supplier<? extends Item> supplier
+	) {
+		_itemClass = itemClass;
+		_supplier  = supplier;
+	}
+
+	/**
+	 * Replaces the factory used for one of the sheets the parsers load, such as
+	 * Parser.SHEET_COMPONENT.  This does not add a sheet to the load
+	 * @param sheetName Sheet name, which is not case sensitive
+	 * @param itemClass Class of the items the supplier creates.  Its setters are used
+	 *                  to bind the columns of the sheet
+	 * @param supplier  Creates a new item for each row
+	 */
+	public static <T extends Item> void register(
+		String                sheetName,
+		Class<T>              itemClass,
+		Supplier<? extends T> supplier
+	) {
+		_factories.put( sheetName.toUpperCase(), new ItemFactory( itemClass, supplier ));
+	}
+
+	/**
+	 * @return The factory registered for a sheet, or null if there is none
+	 */
+	static ItemFactory getFactory(
+		String sheetName
+	) {
+		return _factories.get( sheetName.toUpperCase() );
+	}
+
+	/**
+	 * @return A factory that creates items with the public no argument constructor
+	 *         of a class
+	 */
+	static ItemFactory forClass(
+		Class<? extends Item> itemClass
+	)
+		throws ParseException
+	{
+		final Constructor<? extends Item> constructor;
+		try
+		{
+			constructor = itemClass.getConstructor();
+		}
+		catch( Exception e )
+		{
+			throw new ParseException(e);
+		}
+		return new ItemFactory( itemClass, new Supplier<Item>()
+		{
+			public Item get()
+			{
+				try
+				{
+					return constructor.newInstance();
+				}
+				catch( Exception e )
+				{
+					throw new RuntimeException( e );
+				}
+			}
+		} );
+	}
+
+	Class<? extends Item> getItemClass()
+	{
+		return _itemClass;
+	}
+
+	Item create()
+		throws ParseException
+	{
+		try
+		{
+			return _supplier.get();
+		}
+		catch( RuntimeException e )
+		{
+			throw new ParseException(e);
+		}
+	}
+}
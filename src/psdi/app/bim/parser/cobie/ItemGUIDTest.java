@@ -20,6 +20,7 @@ package psdi.app.bim.parser.cobie;
 public class ItemGUIDTest
        extends ItemBase
 {
+	private static final long serialVersionUID = 1L;
 
 	public String getPageId()
     {
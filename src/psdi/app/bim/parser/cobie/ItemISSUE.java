@@ -18,6 +18,8 @@
 package psdi.app.bim.parser.cobie;
 
 public class ItemISSUE extends ItemBase {
+	private static final long serialVersionUID = 1L;
+
 	private String Type = "";
 	private String Risk = "";
 	private String Chance = "";
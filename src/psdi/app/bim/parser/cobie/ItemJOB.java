@@ -32,6 +32,7 @@ public class ItemJOB
     extends
         ItemBase
 {
+	private static final long serialVersionUID = 1L;
 
 	public static final String	            COBIE_JOB_TYPE_ADJUSTMENT	= "Adjustment";
 	public static final String	            COBIE_JOB_TYPE_CALIBRATION	= "Calibration";
@@ -80,6 +81,44 @@ public class ItemJOB
 	private ItemTYPE[]	                    _typeReferences	           = null;
 	private final LinkedList<JobTask>	            _tasks	                   = new LinkedList<JobTask>();
 
+	private static final ReferenceSpec<ItemJOB> TYPE_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemJOB>( Parser.SHEET_JOB, ItemJOB.class, Parser.SHEET_TYPE )
+	{
+		public String[] getKeys(
+			ItemJOB job
+		) {
+			if( job._typeName == null || job._typeName.length() == 0 )
+			{
+				return null;
+			}
+			ArrayList<String> keys = new ArrayList<String>();
+			StringTokenizer strToken = new StringTokenizer( job._typeName, "," );
+			while( strToken.hasMoreElements() )
+			{
+				keys.add( strToken.nextToken().trim() );
+			}
+			return keys.toArray( new String[keys.size()] );
+		}
+	} );
+
+	// A resource that is not found is looked up again without a trailing period.
+	// That retry is seldom needed, so it is not joined
+	private static final ReferenceSpec<ItemJOB> RESOURCE_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemJOB>( Parser.SHEET_JOB, ItemJOB.class, Parser.SHEET_RESOURCE )
+	{
+		public String[] getKeys(
+			ItemJOB job
+		) {
+			String keys[] = new String[job._resourceRefs.size()];
+			int    i      = 0;
+			for( String name : job._resourceRefs )
+			{
+				keys[i++] = name.trim();
+			}
+			return keys;
+		}
+	} );
+
 	@Override
 	public boolean isDuplicat(
 	    Parser parser,
@@ -104,46 +143,47 @@ public class ItemJOB
 	    Parser project,
 	    long   flags
     ) {
-		super.resolveRerefences(project, flags);
+		applyReferences( project, flags, lookupReferences( project, flags, null ));
+	}
 
-		if( _typeName == null || _typeName.length() == 0 )
+	/**
+	 * Finds the types and resources of the job and checks the task prerequisites
+	 */
+	@Override
+	public ReferenceLookup lookupReferences(
+	    Parser        project,
+	    long          flags,
+	    ReferenceJoin join
+    ) {
+		JobLookup lookup = new JobLookup();
+		lookupBaseReferences( project, lookup );
+
+		String[] typeKeys = TYPE_REF.getKeys( this );
+		if( typeKeys == null )
 		{
 			String[] params = { getPageId(), getName(), Parser.SHEET_TYPE };
-			project.getLogger().dataIntegrityMessage(Parser.VALIDATE_MISSING_REF, params);
+			lookup.message(Parser.VALIDATE_MISSING_REF, params);
 		}
 		else
 		{
 			Page typePage = project.getPage(Parser.SHEET_TYPE);
 			if( typePage != null )
 			{
+				lookup._types = new ArrayList<ItemTYPE>();
 
-				StringTokenizer strToken = new StringTokenizer(_typeName, ",");
-				ArrayList<ItemTYPE> typeList = new ArrayList<ItemTYPE>();
-
-				while( strToken.hasMoreElements() )
+				for( String name : typeKeys )
 				{
-					String name = strToken.nextToken().trim();
-
-					Item item = typePage.getItem(name);
+					Item item = TYPE_REF.find( project, join, this, name );
 					if( item != null )
 					{
-						ItemTYPE type = (ItemTYPE) item;
-						type.addJob(this);
-						typeList.add(type);
+						lookup._types.add( (ItemTYPE) item );
 					}
 					else
 					{
 						String[] params = { getPageId(), getName(), Parser.SHEET_TYPE, _typeName };
-						project.getLogger().dataIntegrityMessage(Parser.VALIDATE_UNRESOLVED_REF, params);
+						lookup.message(Parser.VALIDATE_UNRESOLVED_REF, params);
 					}
 				}
-				Object array[] = typeList.toArray();
-
-				_typeReferences = new ItemTYPE[array.length];
-				for( int i = 0; i < array.length; i++ )
-				{
-					_typeReferences[i] = (ItemTYPE) array[i];
-				}
 			}
 
 		}
@@ -162,34 +202,71 @@ public class ItemJOB
 				if( findTaskByName(preReqs[i]) == null )
 				{
 					String[] params = { getName(), task.getTaskName(), preReqs[i] };
-					project.getLogger().dataIntegrityMessage(Parser.VALIDATE_TASK_PREREQ_MISSING, params);
+					lookup.message(Parser.VALIDATE_TASK_PREREQ_MISSING, params);
 				}
 			}
 		}
 		
-		Iterator<String> itrRes = _resourceRefs.iterator();
-		while( itrRes.hasNext() )
+		for( String name : RESOURCE_REF.getKeys( this ))
 		{
-			String name = itrRes.next().trim();
-			ItemRESOURCE newResource = (ItemRESOURCE) project.getItem( Parser.SHEET_RESOURCE, name);
+			ItemRESOURCE newResource = (ItemRESOURCE) RESOURCE_REF.find( project, join, this, name );
 			if (newResource != null)
 			{
-				_resources.put( name, newResource );
+				lookup._resourceNames.add( name );
+				lookup._resources.add( newResource );
 				continue;
 			}
 			if( name.charAt( name.length() -1 ) == '.' )
 			{
 				name = name.substring( 0, name.length()- 1 );
-				newResource = (ItemRESOURCE) project.getItem( Parser.SHEET_RESOURCE, name);
+				newResource = (ItemRESOURCE) RESOURCE_REF.find( project, join, this, name );
 				if (newResource != null)
 				{
-					_resources.put( name, newResource );
+					lookup._resourceNames.add( name );
+					lookup._resources.add( newResource );
 					continue;
 				}
 			}
 			String[] params = { getPageId(), getName(), Parser.SHEET_RESOURCE, name };
-			project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
+			lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
+		}
+		return lookup;
+	}
+
+	@Override
+	public void applyReferences(
+	    Parser          project,
+	    long            flags,
+	    ReferenceLookup found
+    ) {
+		JobLookup lookup = (JobLookup)found;
+		lookup.log( project );
+		applyBaseReferences( lookup );
+		if( lookup._types != null )
+		{
+			_typeReferences = new ItemTYPE[lookup._types.size()];
+			for( int i = 0; i < _typeReferences.length; i++ )
+			{
+				_typeReferences[i] = lookup._types.get( i );
+				_typeReferences[i].addJob(this);
+			}
 		}
+		for( int i = 0; i < lookup._resources.size(); i++ )
+		{
+			_resources.put( lookup._resourceNames.get( i ), lookup._resources.get( i ));
+		}
+	}
+
+	/**
+	 * The references found by lookupReferences
+	 */
+	private static class JobLookup
+		extends ReferenceLookup
+	{
+		// Null if there is no type sheet
+		private ArrayList<ItemTYPE>     _types         = null;
+		private ArrayList<String>       _resourceNames = new ArrayList<String>();
+		private ArrayList<ItemRESOURCE> _resources     = new ArrayList<ItemRESOURCE>();
 	}
 
 	public void addTask(
@@ -18,6 +18,7 @@
 package psdi.app.bim.parser.cobie;
 
 public class ItemRESOURCE extends ItemBase {
+	private static final long serialVersionUID = 1L;
 
 	public static final int RESOURCE_TYPE_UNKNOWN  = 0;
 	public static final int RESOURCE_TYPE_LABOR    = 1;
@@ -22,6 +22,8 @@ import java.util.Hashtable;
 
 public class ItemSPACE extends ItemSpaces 
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _dateTimeStamp = "";
 	private String _floorName = "";
 	private String _roomTag = "";
@@ -17,15 +17,17 @@
 **/
 package psdi.app.bim.parser.cobie;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.StringTokenizer;
 
 public class   ItemSPARE 
 	   extends ItemBase
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _typeName = "";
 	private String _supplierNames = "";
 	private String _setNumber = "";
@@ -38,6 +40,26 @@ public class   ItemSPARE
 	
 	private Hashtable<String, ItemCONTACT> _suppliers = new Hashtable<String, ItemCONTACT>();
 
+	private static final ReferenceSpec<ItemSPARE> TYPE_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemSPARE>( Parser.SHEET_SPARE, ItemSPARE.class, Parser.SHEET_TYPE )
+	{
+		public String[] getKeys(
+			ItemSPARE spare
+		) {
+			return new String[] { spare.getTypeName() };
+		}
+	} );
+
+	private static final ReferenceSpec<ItemSPARE> SUPPLIER_REF = ReferenceSpec.declare(
+		new ReferenceSpec<ItemSPARE>( Parser.SHEET_SPARE, ItemSPARE.class, Parser.SHEET_CONTACT )
+	{
+		public String[] getKeys(
+			ItemSPARE spare
+		) {
+			return spare._supplierRefs.toArray( new String[spare._supplierRefs.size()] );
+		}
+	} );
+
 	
 	public void addSupplier(
 		ItemCONTACT supplier
@@ -57,42 +79,84 @@ public class   ItemSPARE
 		Parser project,
 		long    flags
 	) {
-		super.resolveRerefences( project, flags );
+		applyReferences( project, flags, lookupReferences( project, flags, null ));
+	}
+
+	/**
+	 * Finds the type and suppliers of the spare
+	 */
+	@Override
+	public ReferenceLookup lookupReferences(
+		Parser        project,
+		long          flags,
+		ReferenceJoin join
+	) {
+		SpareLookup lookup = new SpareLookup();
+		lookupBaseReferences( project, lookup );
 
 		if( project.getPage( Parser.SHEET_TYPE ) != null )
 		{
-			ItemTYPE type = (ItemTYPE)project.getItem( Parser.SHEET_TYPE, getTypeName() );
+			String   typeName = TYPE_REF.getKeys( this )[0];
+			ItemTYPE type     = (ItemTYPE)TYPE_REF.find( project, join, this, typeName );
 			if( type == null )
 			{
-				String[] params = { getPageId(), getName(), Parser.SHEET_TYPE, getTypeName() };
-				project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
+				String[] params = { getPageId(), getName(), Parser.SHEET_TYPE, typeName };
+				lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
 			}
 			else
 			{
-				_type = type;
-				_type.addSpare(this);
+				lookup._type = type;
 			}
 		}
 
 		if( project.getPage( Parser.SHEET_CONTACT ) != null )
 		{
-			Iterator<String> suppliers =  _supplierRefs.iterator();
-			while( suppliers.hasNext() )
+			for( String name : SUPPLIER_REF.getKeys( this ))
 			{
-				String name = suppliers.next();
-				ItemCONTACT contact = (ItemCONTACT)project.getItem( Parser.SHEET_CONTACT, name );
+				ItemCONTACT contact = (ItemCONTACT)SUPPLIER_REF.find( project, join, this, name );
 				if( contact == null )
 				{
 					String[] params = { getPageId(), getName(), Parser.SHEET_CONTACT, name };
-					project.getLogger().dataIntegrityMessage( Parser.VALIDATE_UNRESOLVED_REF, params );
+					lookup.message( Parser.VALIDATE_UNRESOLVED_REF, params );
 				}
 				else
 				{
-					contact.makeTypeContact();
-					addSupplier( contact );
+					lookup._suppliers.add( contact );
 				}
 			}
 		}
+		return lookup;
+	}
+
+	@Override
+	public void applyReferences(
+		Parser          project,
+		long            flags,
+		ReferenceLookup found
+	) {
+		SpareLookup lookup = (SpareLookup)found;
+		lookup.log( project );
+		applyBaseReferences( lookup );
+		if( lookup._type != null )
+		{
+			_type = lookup._type;
+			_type.addSpare(this);
+		}
+		for( ItemCONTACT contact : lookup._suppliers )
+		{
+			contact.makeTypeContact();
+			addSupplier( contact );
+		}
+	}
+
+	/**
+	 * The references found by lookupReferences
+	 */
+	private static class SpareLookup
+		extends ReferenceLookup
+	{
+		private ItemTYPE               _type      = null;
+		private ArrayList<ItemCONTACT> _suppliers = new ArrayList<ItemCONTACT>();
 	}
 	
 	
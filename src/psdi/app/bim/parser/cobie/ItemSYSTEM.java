@@ -23,6 +23,8 @@ import java.util.StringTokenizer;
 public class   ItemSYSTEM        
        extends ItemSystemBase<ItemCOMPONENT> 
 {
+	private static final long serialVersionUID = 1L;
+
 	private static final String COMPONENTNAME = "ComponentNames";
 	
 	private String _componentNames = "";
@@ -0,0 +1,35 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+/**
+ * Receives items as they are added to the parse tree, in the order they are
+ * parsed.  Items arrive after filtering and duplicate checks and have their unique
+ * ID set.  Attributes created from extension columns arrive as ATTRIBUTE items in
+ * the middle of the sheet they came from.
+ * <p>
+ * When the parser is told not to retain items, the sink is the only place they go,
+ * so memory use does not grow with the model.  Duplicates are then not detected and
+ * references between sheets are not resolved.
+ */
+public interface ItemSink
+{
+	void onSheetStart( String sheetName, String[] columnNames );
+	void onItem( String sheetName, Item item );
+	void onSheetEnd( String sheetName );
+}
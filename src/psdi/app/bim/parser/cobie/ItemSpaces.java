@@ -21,6 +21,8 @@ package psdi.app.bim.parser.cobie;
 public abstract class ItemSpaces
     extends ItemBase
 {
+	private static final long serialVersionUID = 1L;
+
 	private String _grossArea = "";
 	private String _netArea   = "";
 	private String _perimeter = "";
@@ -27,6 +27,8 @@ import java.util.Iterator;
 public abstract class ItemSystemBase<ItemType extends ItemBase>
        extends        ItemBase
 {
+	private static final long serialVersionUID = 1L;
+
 	private HashSet<String> _memberRefs = new HashSet<String>();
 	
 	private Hashtable<String, ItemType> _members = new Hashtable<String, ItemType>();
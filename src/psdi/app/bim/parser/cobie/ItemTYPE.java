@@ -21,6 +21,7 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 
 public class ItemTYPE extends ItemBase {
+	private static final long serialVersionUID = 1L;
 
 	private String      _AssetType = "";
 	private String      _DurationUnit = "";
@@ -23,6 +23,8 @@ import java.util.Iterator;
 public class ItemValueList
     extends ItemBase
 {
+	private static final long serialVersionUID = 1L;
+
 	HashSet<String> _valueSet;
 	
 	ItemValueList(
@@ -44,7 +46,7 @@ public class ItemValueList
 	public boolean match(
 		HashSet<String> valueSet
 	) {
-		return _valueSet.equals( valueSet );
+		return _valueSet == valueSet || _valueSet.equals( valueSet );
 	}
 
 	public String toString()
@@ -23,6 +23,8 @@ import java.util.StringTokenizer;
 public class   ItemZONE 
        extends ItemSystemBase<ItemSPACE> 
 {
+	private static final long serialVersionUID = 1L;
+
 	private static final String SPACENAMES = "SpaceNames";
 	
 	private String SpaceNames = "";
@@ -0,0 +1,809 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a comma separated file through a memory mapping of the file.  The file is
+ * scanned once when it is opened to build an index of row start offsets using the
+ * same quote handling as CsvInputTokenizer.  Rows are then tokenized in place, and
+ * fields are returned as CharSequence slices over the mapping.  A field is only
+ * copied into a String when toString is called on it.
+ * <p>
+ * Only UTF-8 and single byte ASCII compatible charsets are supported.  The
+ * constructor throws UnsupportedEncodingException for anything else, including a
+ * UTF-16 byte order mark, so the caller can fall back to CsvInputTokenizer.  As
+ * with CsvInputTokenizer, a file without a byte order mark is read as UTF-8 if the
+ * first block of the file is valid UTF-8 and as ISO-8859-1 otherwise, unless a
+ * charset is given.
+ */
+public class   MappedCsvInputTokenizer
+    implements InputTokenizer
+{
+	// Files are mapped in 1GB segments since a single mapping is limited to 2GB
+	private static final int  SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_SIZE  = 1L << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK  = SEGMENT_SIZE - 1;
+
+	// Bytes checked for UTF-8 when the charset is not given
+	private static final int  DETECT_SIZE   = 64 * 1024;
+
+	// sun.misc.Unsafe and its invokeCleaner method, used to unmap on Java 9 and later.
+	// Both are null if they are not available
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+
+	static
+	{
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try
+		{
+			Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+			invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+			java.lang.reflect.Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+			theUnsafe.setAccessible( true );
+			unsafe = theUnsafe.get( null );
+		}
+		catch( Exception e )
+		{
+			invokeCleaner = null;
+		}
+		UNSAFE         = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	// Set on an index entry if the row contains non ASCII bytes
+	private static final long NON_ASCII     = 0x8000000000000000L;
+
+	private final String       _fileName;
+	private final Charset      _charset;
+	private final boolean      _utf8;
+	// True for the tokenizer that mapped the file, as opposed to one over a row range
+	private final boolean      _owner;
+	private MappedByteBuffer[] _segments;
+	private long               _length      = 0;
+
+	// Start offset of each row, with NON_ASCII set if the row needs decoding
+	private long[]             _rows        = new long[1024];
+	private int                _rowCount    = 0;
+	private int                _nextRow     = 0;
+
+	// Fields of the current row.  The Field objects are reused for each row
+	private Field[]            _fields      = new Field[32];
+	private int                _fieldCount  = 0;
+	private boolean            _rowAscii    = true;
+	private final RowBuffer    _view        = new RowBuffer();
+
+	// Holds fields that are not a contiguous run of bytes in the file, such as
+	// quoted strings with escaped quotes
+	private byte[]             _scratch     = new byte[1024];
+	private int                _scratchLen  = 0;
+
+	// Scan state
+	private long               _pos         = 0;
+	private boolean            _sawHigh     = false;
+	private boolean            _build       = false;
+	private long               _tokStart    = 0;
+	private int                _tokLen      = 0;
+	private boolean            _tokScratch  = false;
+
+	public MappedCsvInputTokenizer(
+		File file
+	)
+		throws IOException
+	{
+		this( file, null );
+	}
+
+	/**
+	 * @param file    File to map
+	 * @param charset Charset used when the file does not start with a byte order mark,
+	 *                or null to pick UTF-8 or ISO-8859-1 from the content
+	 */
+	public MappedCsvInputTokenizer(
+		File    file,
+		Charset charset
+	)
+		throws IOException
+	{
+		_fileName = file.getPath();
+		_owner    = true;
+
+		RandomAccessFile raf = new RandomAccessFile( file, "r" );
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			_length = channel.size();
+			int count = (int)( ( _length + SEGMENT_SIZE - 1 ) >>> SEGMENT_SHIFT );
+			_segments = new MappedByteBuffer[count];
+			for( int i = 0; i < count; i++ )
+			{
+				long base = (long)i << SEGMENT_SHIFT;
+				_segments[i] = channel.map( FileChannel.MapMode.READ_ONLY, base, Math.min( SEGMENT_SIZE, _length - base ));
+			}
+		}
+		finally
+		{
+			// The mapping remains valid after the channel is closed
+			raf.close();
+		}
+
+		long start = 0;
+		if( _length >= 3 && byteAt( 0 ) == (byte)0xEF && byteAt( 1 ) == (byte)0xBB && byteAt( 2 ) == (byte)0xBF )
+		{
+			charset = StandardCharsets.UTF_8;
+			start   = 3;
+		}
+		else if(    _length >= 2
+			     && (   ( byteAt( 0 ) == (byte)0xFE && byteAt( 1 ) == (byte)0xFF )
+			         || ( byteAt( 0 ) == (byte)0xFF && byteAt( 1 ) == (byte)0xFE )))
+		{
+			close();
+			throw new UnsupportedEncodingException( "UTF-16" );
+		}
+		else if( charset == null )
+		{
+			ByteBuffer head = _segments.length > 0 ? _segments[0].duplicate() : ByteBuffer.allocate( 0 );
+			head.limit( Math.min( head.limit(), DETECT_SIZE ));
+			charset = CsvInputTokenizer.isUtf8( head, _length <= DETECT_SIZE )
+				    ? StandardCharsets.UTF_8
+				    : StandardCharsets.ISO_8859_1;
+		}
+		if(    !charset.equals( StandardCharsets.UTF_8 )
+			&& !charset.equals( StandardCharsets.US_ASCII )
+			&& !charset.equals( StandardCharsets.ISO_8859_1 ))
+		{
+			close();
+			throw new UnsupportedEncodingException( charset.name() );
+		}
+		_charset = charset;
+		_utf8    = charset.equals( StandardCharsets.UTF_8 );
+
+		buildIndex( start );
+	}
+
+	/**
+	 * Creates a tokenizer over the rows from fromRow up to, but not including, toRow.
+	 * It shares the mapping and row index with this tokenizer but has its own scan
+	 * state, so tokenizers over different row ranges can be used on different threads.
+	 * Since the index is built with the full quote handling, every range starts on a
+	 * real row boundary
+	 */
+	MappedCsvInputTokenizer(
+		MappedCsvInputTokenizer source,
+		int                     fromRow,
+		int                     toRow
+	) {
+		_fileName = source._fileName;
+		_charset  = source._charset;
+		_utf8     = source._utf8;
+		_owner    = false;
+		_segments = source._segments;
+		_length   = source._length;
+		_rows     = source._rows;
+		_rowCount = Math.min( toRow, source._rowCount );
+		_nextRow  = Math.max( 0, fromRow );
+	}
+
+	public boolean setCurrentTab(
+	    String name
+    ) {
+	    return true;
+    }
+
+	public String[] getRow()
+	{
+		if( getRowView() == null )
+		{
+			return null;
+		}
+		return _view.toStrings();
+	}
+
+	public RowView getRowView()
+	{
+		_view.clear();
+		if( !nextRow() )
+		{
+			return null;
+		}
+		for( int i = 0; i < _fieldCount; i++ )
+		{
+			_view.set( i, _fields[i] );
+		}
+		return _view;
+	}
+
+	/**
+	 * Tokenizes the next row.  The fields are available from getField until the
+	 * next call
+	 * @return false if there are no more rows
+	 */
+	public boolean nextRow()
+	{
+		if( _nextRow >= _rowCount )
+		{
+			return false;
+		}
+		long entry = _rows[_nextRow++];
+		_rowAscii  = ( entry & NON_ASCII ) == 0;
+		scanRow( entry & ~NON_ASCII, true );
+		return true;
+	}
+
+	public int getFieldCount()
+	{
+		return _fieldCount;
+	}
+
+	public CharSequence getField(
+		int i
+	) {
+		return _fields[i];
+	}
+
+	/**
+	 * @return Number of rows in the file, including the header row
+	 */
+	public int getRowCount()
+	{
+		return _rowCount;
+	}
+
+	/**
+	 * @return Index of the row the next call to getRow or nextRow returns
+	 */
+	public int getNextRow()
+	{
+		return _nextRow;
+	}
+
+	/**
+	 * Positions the tokenizer so the next call to getRow or nextRow returns the given row
+	 */
+	public void seekRow(
+		int row
+	) {
+		_nextRow = Math.max( 0, Math.min( row, _rowCount ));
+	}
+
+	public String getFileName()
+	{
+		return _fileName;
+	}
+
+	/**
+	 * Unmaps the file if this tokenizer mapped it, so the file can be deleted.  The
+	 * tokenizers over row ranges of this one must not be used after it is closed
+	 */
+	public void close()
+	{
+		if( _owner )
+		{
+			for( int i = 0; i < _segments.length; i++ )
+			{
+				if( _segments[i] != null )
+				{
+					unmap( _segments[i] );
+				}
+			}
+		}
+		_segments   = new MappedByteBuffer[0];
+		_length     = 0;
+		_rows       = new long[0];
+		_rowCount   = 0;
+		_fieldCount = 0;
+	}
+
+	/**
+	 * Releases a mapping now rather than when the buffer is collected.  There is no
+	 * public API for this, so if neither the Java 9 nor the Java 8 internal method
+	 * can be called the mapping is left to the garbage collector
+	 */
+	private static void unmap(
+		MappedByteBuffer buffer
+	) {
+		try
+		{
+			if( INVOKE_CLEANER != null )
+			{
+				INVOKE_CLEANER.invoke( UNSAFE, buffer );
+			}
+			else
+			{
+				Method cleanerMethod = buffer.getClass().getMethod( "cleaner" );
+				cleanerMethod.setAccessible( true );
+				Object cleaner = cleanerMethod.invoke( buffer );
+				if( cleaner != null )
+				{
+					cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+				}
+			}
+		}
+		catch( Exception e )
+		{
+			// Released when the buffer is collected
+		}
+	}
+
+	private void buildIndex(
+		long start
+	) {
+		long pos = start;
+		while( pos < _length )
+		{
+			long next = scanRow( pos, false );
+			if( _rowCount == _rows.length )
+			{
+				_rows = Arrays.copyOf( _rows, _rows.length * 2 );
+			}
+			_rows[_rowCount++] = _sawHigh ? ( pos | NON_ASCII ) : pos;
+			pos = next;
+		}
+	}
+
+	/**
+	 * Runs the CsvInputTokenizer state machine over one row.  When build is false only
+	 * the end of the row is found.  When it is true the fields of the row are recorded
+	 * @return Offset of the start of the next row
+	 */
+	private long scanRow(
+		long    start,
+		boolean build
+	) {
+		_pos        = start;
+		_build      = build;
+		_sawHigh    = false;
+		_fieldCount = 0;
+		_scratchLen = 0;
+		_tokLen     = 0;
+
+	    int state = 0;
+     	int c = next();
+     	boolean lineEnd = false;
+	    while( !lineEnd )
+	    {
+	    	switch( state )
+	    	{
+		    	case 0:					// Start state
+		    		if( c == '\n' )
+		    		{
+		    			lineEnd = true;
+		    			continue;
+		    		}
+		    		if( c < 0x80 )
+		    		{
+			    		if( Character.isWhitespace( (char)c )) 	// Filter white space at start of token
+			    		{
+			    			break;
+			    		}
+		    		}
+		    		else if( _utf8 )
+		    		{
+		    			int len = whitespaceLength( _pos - 1 );
+		    			if( len > 0 )
+		    			{
+		    				_pos += len - 1;
+		    				break;
+		    			}
+		    		}
+		    		if( c == '"' )		// See start of quoted string;
+		    		{
+		    			state = 2;
+		    		}
+		    		else if( c == ',' )	// See empty token
+		    		{
+		    			state = 10;
+		    		}
+		    		else				// Start normal token
+		    		{
+		    			append( _pos - 1 );
+		    			run( ',', '\n' );
+			            state = 1;
+		    		}
+		    		break;
+		    	case 1:					// Normal non quoted token
+		    		if( c == ',' )
+		    		{
+		    			state = 10;
+		    		}
+		    		else
+		    		{
+		    			append( _pos - 1 );
+		    			run( ',', '\n' );
+		    		}
+		    		break;
+		    	case 2:					// Start of quoted String
+		    		if( c == '\n' )     // Skip over new lines inside of quotes
+		    		{
+		    			c = next();
+		    	     	if( c == -1 )
+		    	     	{
+			    			lineEnd = true;
+		    	     	}
+		    	     	continue;
+		    		}
+		    		if( c == '"' )		// Either end quite or escape
+		    		{
+		    			state = 3;
+		    		}
+		    		else				// Add character from quoted string
+		    		{
+		    			append( _pos - 1 );
+		    			run( '"', '\n' );
+		    			c = next();
+		    	     	if( c == -1 )
+		    	     	{
+			    			lineEnd = true;
+		    	     	}
+		    	     	continue;
+		    		}
+	    			break;
+		    	case 3:					// Test for escaped quote
+		    		if( c == '"' )		// Second quite so escape
+		    		{
+		    			state = 2;
+		    			append( _pos - 1 );
+			    		break;
+		    		}
+		    		else				// Seen quoted string;
+		    		{
+		    			state = 4;
+		    			continue;
+		    		}
+		    	case 4:					// Seen quoted string throw away until comma
+		    		if( c == ',' )
+		    		{
+		    			state = 10;
+		    		}
+		    		break;
+		    	case 10:				// Token recognized;
+		    		endToken();
+					state = 0;
+		    		continue;
+	    	}
+	    	c = next();
+	     	if( c == -1 )
+	     	{
+	     		break;
+	     	}
+    		if( c == '\n' )
+    		{
+    			break;
+    		}
+	    }
+
+	    if( _tokLen > 0 )
+	    {
+	    	endToken();
+	    }
+	    return _pos;
+	}
+
+	private int next()
+	{
+		if( _pos >= _length )
+		{
+			return -1;
+		}
+		byte b = byteAt( _pos++ );
+		if( b < 0 )
+		{
+			_sawHigh = true;
+			return b & 0xFF;
+		}
+		return b;
+	}
+
+	/**
+	 * Adds bytes to the current token up to, but not including, the next occurrence of
+	 * either stop byte.  Equivalent to appending them one at a time from the state
+	 * machine
+	 */
+	private void run(
+		char stop1,
+		char stop2
+	) {
+		long start = _pos;
+		while( _pos < _length )
+		{
+			MappedByteBuffer segment = _segments[(int)( _pos >>> SEGMENT_SHIFT )];
+			int     i       = (int)( _pos & SEGMENT_MASK );
+			int     limit   = segment.limit();
+			boolean stopped = false;
+			while( i < limit )
+			{
+				byte b = segment.get( i );
+				if( b == stop1 || b == stop2 )
+				{
+					stopped = true;
+					break;
+				}
+				if( b < 0 )
+				{
+					_sawHigh = true;
+				}
+				i++;
+			}
+			_pos = ( _pos & ~SEGMENT_MASK ) + i;
+			if( stopped )
+			{
+				break;
+			}
+		}
+		if( !_build || _pos == start )
+		{
+			return;
+		}
+		int count = (int)( _pos - start );
+		if( !_tokScratch && _tokStart + _tokLen == start )
+		{
+			_tokLen += count;
+			return;
+		}
+		for( long pos = start; pos < _pos; pos++ )
+		{
+			append( pos );
+		}
+	}
+
+	private byte byteAt(
+		long pos
+	) {
+		return _segments[(int)( pos >>> SEGMENT_SHIFT )].get( (int)( pos & SEGMENT_MASK ));
+	}
+
+	private void copyBytes(
+		long   pos,
+		byte[] dest,
+		int    offset,
+		int    len
+	) {
+		while( len > 0 )
+		{
+			ByteBuffer segment = _segments[(int)( pos >>> SEGMENT_SHIFT )].duplicate();
+			int        start   = (int)( pos & SEGMENT_MASK );
+			int        count   = Math.min( len, segment.limit() - start );
+			segment.position( start );
+			segment.get( dest, offset, count );
+			pos    += count;
+			offset += count;
+			len    -= count;
+		}
+	}
+
+	/**
+	 * Adds the byte at pos to the current token.  The token stays a slice of the
+	 * mapping as long as its bytes are contiguous
+	 */
+	private void append(
+		long pos
+	) {
+		if( !_build )
+		{
+			return;
+		}
+		if( _tokLen == 0 )
+		{
+			_tokStart   = pos;
+			_tokLen     = 1;
+			_tokScratch = false;
+			return;
+		}
+		if( !_tokScratch )
+		{
+			if( pos == _tokStart + _tokLen )
+			{
+				_tokLen++;
+				return;
+			}
+			ensureScratch( _tokLen + 1 );
+			copyBytes( _tokStart, _scratch, _scratchLen, _tokLen );
+			_tokStart    = _scratchLen;
+			_scratchLen += _tokLen;
+			_tokScratch = true;
+		}
+		ensureScratch( 1 );
+		_scratch[_scratchLen++] = byteAt( pos );
+		_tokLen++;
+	}
+
+	/**
+	 * Trims the current token the same way String.trim does and adds it to the fields
+	 */
+	private void endToken()
+	{
+		if( !_build )
+		{
+			_tokLen = 0;
+			return;
+		}
+		long start = _tokStart;
+		int  len   = _tokLen;
+		while( len > 0 && ( tokenByte( start ) & 0xFF ) <= ' ' )
+		{
+			start++;
+			len--;
+		}
+		while( len > 0 && ( tokenByte( start + len - 1 ) & 0xFF ) <= ' ' )
+		{
+			len--;
+		}
+
+		if( _fieldCount == _fields.length )
+		{
+			_fields = Arrays.copyOf( _fields, _fields.length * 2 );
+		}
+		Field field = _fields[_fieldCount];
+		if( field == null )
+		{
+			field = new Field();
+			_fields[_fieldCount] = field;
+		}
+		_fieldCount++;
+		field.set( start, len, _tokScratch, _rowAscii );
+		_tokLen = 0;
+	}
+
+	private byte tokenByte(
+		long pos
+	) {
+		return _tokScratch ? _scratch[(int)pos] : byteAt( pos );
+	}
+
+	private void ensureScratch(
+		int count
+	) {
+		if( _scratchLen + count > _scratch.length )
+		{
+			_scratch = Arrays.copyOf( _scratch, Math.max( _scratchLen + count, _scratch.length * 2 ));
+		}
+	}
+
+	/**
+	 * Decodes the UTF-8 sequence at pos
+	 * @return The length of the sequence if it is a white space character, otherwise 0
+	 */
+	private int whitespaceLength(
+		long pos
+	) {
+		int lead = byteAt( pos ) & 0xFF;
+		int len;
+		int cp;
+		if( lead >= 0xF0 && lead < 0xF8 )
+		{
+			len = 4;
+			cp  = lead & 0x07;
+		}
+		else if( lead >= 0xE0 )
+		{
+			len = 3;
+			cp  = lead & 0x0F;
+		}
+		else if( lead >= 0xC0 )
+		{
+			len = 2;
+			cp  = lead & 0x1F;
+		}
+		else
+		{
+			return 0;
+		}
+		if( pos + len > _length )
+		{
+			return 0;
+		}
+		for( int i = 1; i < len; i++ )
+		{
+			int b = byteAt( pos + i ) & 0xFF;
+			if( ( b & 0xC0 ) != 0x80 )
+			{
+				return 0;
+			}
+			cp = ( cp << 6 ) | ( b & 0x3F );
+		}
+		return Character.isWhitespace( cp ) ? len : 0;
+	}
+
+	/**
+	 * A field of the current row.  ASCII fields are read directly from the mapping,
+	 * anything else is decoded on first use
+	 */
+	private final class Field
+		implements CharSequence
+	{
+		private long    _start;
+		private int     _len;
+		private boolean _inScratch;
+		private boolean _ascii;
+		private String  _value;
+
+		void set(
+			long    start,
+			int     len,
+			boolean inScratch,
+			boolean ascii
+		) {
+			_start     = start;
+			_len       = len;
+			_inScratch = inScratch;
+			_ascii     = ascii;
+			_value     = null;
+		}
+
+		public int length()
+		{
+			return _ascii ? _len : toString().length();
+		}
+
+		public char charAt(
+			int index
+		) {
+			if( !_ascii )
+			{
+				return toString().charAt( index );
+			}
+			if( index < 0 || index >= _len )
+			{
+				throw new IndexOutOfBoundsException( Integer.toString( index ));
+			}
+			return (char)( _inScratch ? _scratch[(int)_start + index] : byteAt( _start + index ));
+		}
+
+		public CharSequence subSequence(
+			int start,
+			int end
+		) {
+			return toString().subSequence( start, end );
+		}
+
+		public String toString()
+		{
+			if( _value == null )
+			{
+				byte bytes[];
+				int  offset;
+				if( _inScratch )
+				{
+					bytes  = _scratch;
+					offset = (int)_start;
+				}
+				else
+				{
+					bytes  = new byte[_len];
+					offset = 0;
+					copyBytes( _start, bytes, 0, _len );
+				}
+				_value = new String( bytes, offset, _len, _ascii ? StandardCharsets.ISO_8859_1 : _charset );
+			}
+			return _value;
+		}
+	}
+}
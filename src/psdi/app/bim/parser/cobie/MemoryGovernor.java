@@ -0,0 +1,187 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * Keeps the parse tree within a share of the heap by spilling cold pages to disk.
+ * Occupancy is checked between sheets using the current usage of the tenured
+ * memory pools, where the parse tree ends up.  Usage after the last collection is
+ * not used since the old generation may not have been collected at all yet.  When
+ * occupancy is over the budget, the pages that are not needed again until
+ * references are resolved are written to spill files and read back the first time
+ * they are used.  Only used with Parser.FLAG_SPILL_PAGES.
+ */
+final class MemoryGovernor
+{
+	/**
+	 * Pages that are large and are not searched while later sheets are loaded
+	 */
+	private static final String COLD_PAGES[] = { Parser.SHEET_ATTRIBUTE, Parser.SHEET_DOCUMENT };
+
+	private double                       _budget;
+	private final MemoryMXBean           _memoryBean = ManagementFactory.getMemoryMXBean();
+	private final List<MemoryPoolMXBean> _pools      = ManagementFactory.getMemoryPoolMXBeans();
+	private File                         _spillDir   = null;
+	private int                          _spillCount = 0;
+
+	/**
+	 * @param budget Share of the maximum heap, between 0 and 1, the parse tree may
+	 *               use before pages are spilled
+	 */
+	MemoryGovernor(
+		double budget
+	) {
+		_budget = budget;
+	}
+
+	/**
+	 * @return Share of the maximum heap in use in the tenured pools
+	 */
+	double getOccupancy()
+	{
+		MemoryUsage heap = _memoryBean.getHeapMemoryUsage();
+		long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+		if( max <= 0 )
+		{
+			return 0;
+		}
+
+		long    used    = 0;
+		boolean tenured = false;
+		for( MemoryPoolMXBean pool : _pools )
+		{
+			// Of the heap pools only the tenured ones support a usage threshold,
+			// eden and survivor spaces don't
+			if(    pool.getType() != MemoryType.HEAP
+				|| !pool.isValid()
+				|| !pool.isUsageThresholdSupported() )
+			{
+				continue;
+			}
+			MemoryUsage usage = pool.getUsage();
+			if( usage != null )
+			{
+				used += usage.getUsed();
+				tenured = true;
+			}
+		}
+		if( !tenured )
+		{
+			used = heap.getUsed();
+		}
+		return (double)used / max;
+	}
+
+	void setBudget(
+		double budget
+	) {
+		_budget = budget;
+	}
+
+	boolean isOverBudget()
+	{
+		return getOccupancy() > _budget;
+	}
+
+	/**
+	 * Spills the cold pages of the parse tree if the heap is over budget.  A page
+	 * that can't be written is left in memory
+	 */
+	void checkpoint(
+		Hashtable<String, Page> parseTree,
+		MessageLogger           logger
+	) {
+		if( !isOverBudget() )
+		{
+			return;
+		}
+		for( int i = 0; i < COLD_PAGES.length; i++ )
+		{
+			Page page = parseTree.get( COLD_PAGES[i] );
+			if( page == null || page.isSpilled() || page.getItemCount() == 0 )
+			{
+				continue;
+			}
+			try
+			{
+				if( page.spill( getSpillDirectory() ))
+				{
+					_spillCount++;
+				}
+			}
+			catch( IOException e )
+			{
+				if( logger != null )
+				{
+					logger.exception( e );
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of times a page has been spilled
+	 */
+	int getSpillCount()
+	{
+		return _spillCount;
+	}
+
+	/**
+	 * Deletes the spill directory.  Pages still spilled can no longer be read
+	 */
+	void close()
+	{
+		if( _spillDir == null )
+		{
+			return;
+		}
+		File files[] = _spillDir.listFiles();
+		if( files != null )
+		{
+			for( int i = 0; i < files.length; i++ )
+			{
+				files[i].delete();
+			}
+		}
+		_spillDir.delete();
+		_spillDir = null;
+	}
+
+	private File getSpillDirectory()
+		throws IOException
+	{
+		if( _spillDir == null )
+		{
+			_spillDir = Files.createTempDirectory( "cobie-spill" ).toFile();
+			_spillDir.deleteOnExit();
+		}
+		return _spillDir;
+	}
+}
@@ -182,8 +182,8 @@ public class OmniClassParser
 		String tableId = "";
         try
         {
-			String values[];
-	        values = _tokenizer.getRow();
+			RowView values;
+	        values = _tokenizer.getRowView();
 			if( values == null )
 			{
 				return null;
@@ -194,7 +194,7 @@ public class OmniClassParser
 			// Test the first entry to see if it is a valid OmniClass number.  If it is
 			// Assume the file format is a single column of OmniClass number in sequence 
 			// with no further formating
-			OmniClassNumber ocn = new OmniClassNumber( values[0] );
+			OmniClassNumber ocn = new OmniClassNumber( values.getString(0) );
 			int tableNum = ocn.getTable();
 			if( tableNum > 0 )
 			{
@@ -203,26 +203,26 @@ public class OmniClassParser
 				
 				while( values != null )
 				{
-					values = parseOmniClass( rootClass, values );
+					values = parseOmniClassView( rootClass, values );
 				}
 			}
 			else
 			{
-				tableId = values[0];
+				tableId = values.getString(0);
 
 				// Parse header row to find columns
-		        values = _tokenizer.getRow();
+		        values = _tokenizer.getRowView();
 				if( values == null )
 				{
 					return null;
 				}
-				parseHeaderRow( values );
-		        values = _tokenizer.getRow();
+				parseHeaderRowView( values );
+		        values = _tokenizer.getRowView();
 				rootClass = new OmniClass( tableId, "", 0, "" );
 				
 				while( values != null )
 				{
-					values = parseOmniClass( rootClass, values );
+					values = parseOmniClassView( rootClass, values );
 				}
 			}
 			return rootClass;
@@ -236,11 +236,23 @@ public class OmniClassParser
 	}
 	
 	
+	/**
+	 * String array form of parseOmniClassView
+	 */
 	public String[] parseOmniClass(
 	    OmniClass      parentClass,
 	    String[]       values
 	) 
 		throws IOException, ParseException 
+	{
+		return RowBuffer.toStrings( parseOmniClassView( parentClass, RowBuffer.wrap( values )));
+	}
+	
+	public RowView parseOmniClassView(
+	    OmniClass      parentClass,
+	    RowView        values
+	) 
+		throws IOException, ParseException 
 	{
 		OmniClass currentClass = null;
 		while( values != null )
@@ -249,12 +261,12 @@ public class OmniClassParser
 			String title = null;
 			int    level = 0;
 			String definition = null;
-			name = values[0];
+			name = values.getString(0);
 			
 			// Try to skip blank lines
 			if( name == null || name.trim().length() == 0 )
 			{
-				values = _tokenizer.getRow();
+				values = _tokenizer.getRowView();
 				if( values == null )
 				{
 					return null;
@@ -269,59 +281,59 @@ public class OmniClassParser
 				return null;
 			}
 			
-			if( _idxDefinition > 0 && values.length > _idxDefinition )
+			if( _idxDefinition > 0 && values.size() > _idxDefinition )
 			{
-				definition = values[_idxDefinition];
+				definition = values.getString(_idxDefinition);
 			}
 			OmniClassNumber ocn = new OmniClassNumber( name );
 			
-			if( _idxlevel_1 >= 0 && values.length > _idxlevel_1
-				&& values[_idxlevel_1] != null && values[_idxlevel_1].length() > 0 )
+			if( _idxlevel_1 >= 0 && values.size() > _idxlevel_1
+				&& values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() > 0 )
 			{
-				title = values[_idxlevel_1];
+				title = values.getString(_idxlevel_1);
 				level = 1;
 			}
-			else if( _idxlevel_2 >= 0 &&  values.length > _idxlevel_2
-				&& values[_idxlevel_2] != null && values[_idxlevel_2].length() > 0 )
+			else if( _idxlevel_2 >= 0 &&  values.size() > _idxlevel_2
+				&& values.get(_idxlevel_2) != null && values.get(_idxlevel_2).length() > 0 )
 			{
-				title = values[_idxlevel_2];
+				title = values.getString(_idxlevel_2);
 				level = 2;
 			}
-			else if( _idxlevel_3 >= 0 &&  values.length > _idxlevel_3
-				&& values[_idxlevel_3] != null && values[_idxlevel_3].length() > 0 )
+			else if( _idxlevel_3 >= 0 &&  values.size() > _idxlevel_3
+				&& values.get(_idxlevel_3) != null && values.get(_idxlevel_3).length() > 0 )
 			{
-				title = values[_idxlevel_3];
+				title = values.getString(_idxlevel_3);
 				level = 3;
 			}
-			else if( _idxlevel_4 >= 0 &&  values.length > _idxlevel_4
-				&& values[_idxlevel_4] != null && values[_idxlevel_4].length() > 0 )
+			else if( _idxlevel_4 >= 0 &&  values.size() > _idxlevel_4
+				&& values.get(_idxlevel_4) != null && values.get(_idxlevel_4).length() > 0 )
 			{
-				title = values[_idxlevel_4];
+				title = values.getString(_idxlevel_4);
 				level = 4;
 			}
-			else if( _idxlevel_5 >= 0 &&  values.length > _idxlevel_5
-				&& values[_idxlevel_5] != null && values[_idxlevel_5].length() > 0 )
+			else if( _idxlevel_5 >= 0 &&  values.size() > _idxlevel_5
+				&& values.get(_idxlevel_5) != null && values.get(_idxlevel_5).length() > 0 )
 			{
-				title = values[_idxlevel_5];
+				title = values.getString(_idxlevel_5);
 				level = 5;
 			}
-			else if( _idxlevel_6 >= 0 &&  values.length > _idxlevel_6
-				&& values[_idxlevel_6] != null && values[_idxlevel_6].length() > 0 )
+			else if( _idxlevel_6 >= 0 &&  values.size() > _idxlevel_6
+				&& values.get(_idxlevel_6) != null && values.get(_idxlevel_6).length() > 0 )
 			{
-				title = values[_idxlevel_6];
+				title = values.getString(_idxlevel_6);
 				level = 6;
 			}
-			else if( _idxlevel_7 >= 0 &&  values.length > _idxlevel_6
-				&& values[_idxlevel_7] != null && values[_idxlevel_7].length() > 0 )
+			else if( _idxlevel_7 >= 0 &&  values.size() > _idxlevel_6
+				&& values.get(_idxlevel_7) != null && values.get(_idxlevel_7).length() > 0 )
 			{
-				title = values[_idxlevel_7];
+				title = values.getString(_idxlevel_7);
 				level = 7;
 			}
 			else
 			{
 				if( !ocn.isValid() )
 				{
-					String params[] = { values[0] };
+					String params[] = { values.getString(0) };
 					throw new ParseException( Parser.ERR_INVALID_OMNICLASS_STUCT, params );
 				}
 			}
@@ -347,7 +359,7 @@ public class OmniClassParser
 				{
 					throw new ParseException( "currentClass == null" );
 				}
-				values = parseOmniClass( currentClass, values );
+				values = parseOmniClassView( currentClass, values );
 				continue;
 			}
 			
@@ -371,7 +383,7 @@ public class OmniClassParser
 				throw new ParseException( Parser.ERR_INVALID_OMNICLASS_STUCT, params );
 			}
 			
-			values = _tokenizer.getRow();
+			values = _tokenizer.getRowView();
 			if( values == null )
 			{
 				return null;
@@ -381,74 +393,80 @@ public class OmniClassParser
 	}
 	
 	public void parseHeaderRow(
-			String values[]
+			String[] values
+			) {
+		parseHeaderRowView( RowBuffer.wrap( values ));
+	}
+	
+	public void parseHeaderRowView(
+			RowView values
 			) {
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String title = values[i] + "(.*)";
+			String title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_1.matches(title))
 			{
 				_idxlevel_1 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String title = values[i] + "(.*)";
+			String title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_2.matches(title))
 			{
 				_idxlevel_2 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String title = values[i] + "(.*)";
+			String title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_3.matches(title))
 			{
 				_idxlevel_3 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String title = values[i] + "(.*)";
+			String title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_4.matches(title))
 			{
 				_idxlevel_4 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String title = values[i] + "(.*)";
+			String title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_5.matches(title))
 			{
 				_idxlevel_5 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String title = values[i] + "(.*)";
+			String title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_6.matches(title))
 			{
 				_idxlevel_6 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String title = values[i] + "(.*)";
+			String title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_7.matches(title))
 			{
 				_idxlevel_7 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String def = values[i].toUpperCase(); 
+			String def = values.getString(i).toUpperCase(); 
 			if( def.startsWith( TITLE_DEFINITIONS ))
 			{
 				_idxDefinition = i;
@@ -17,44 +17,120 @@
 **/
 package psdi.app.bim.parser.cobie;
 
-import java.util.Hashtable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 public class Page
 {
-	private Hashtable<String, Item> _itemHash;
+	// Concurrent so items can be looked up on several threads without locking
+	private ConcurrentHashMap<String, Item> _itemHash;
 	private LinkedList<Item>        _itemList;
 	private String                  _pageName = null;
 	private String[]                _columnNames = null;   
 
+	// Set while the items are spilled to disk.  Items put since then are held in
+	// _itemList and _itemHash until the page is read back
+	private volatile File           _spillFile  = null;
+	private int                     _spillCount = 0;
+	// Keys of the spilled items, so lookups of other keys don't read the page back
+	private volatile HashSet<String> _spillKeys = null;
+	// Set once an item of the page may be held outside it.  The page is then never
+	// spilled, since reading it back would replace the items with copies
+	private volatile boolean        _shared     = false;
+
+	// Extension attributes not yet materialized, and the number of items that had
+	// been put before each one, which is where it belongs in the item list
+	private ArrayList<ExtensionAttribute> _compact    = null;
+	private int[]                   _compactPos = null;
+	// Key of each compact attribute that is the last item put with that key, and
+	// its index in _compact.  Lets getItem find one without materializing the rest
+	private HashMap<String, Integer> _compactKeys = null;
+	// Attributes already created by getItem, by index in _compact
+	private ItemATTRIBUTE[]         _compactItems = null;
+
+	// The last result of getFirstKeyedItem, cleared when the page changes
+	private volatile FirstKeyed     _firstKeyed = null;
+
 	public Page(
 	     String sheetName
      ) {
 		super();
 		_pageName   = sheetName;
-		_itemHash   = new Hashtable<String, Item>();
+		_itemHash   = new ConcurrentHashMap<String, Item>();
 		_itemList   = new LinkedList<Item>();
 	}
 	
 	public Iterator<Item> iterator()
 	{
+		load();
 		return _itemList.iterator();
 	}
 
 	public Item getItem(
 		String key
+	) {
+		Item item = findItem( key );
+		if( item != null )
+		{
+			_shared = true;
+		}
+		return item;
+	}
+
+	/**
+	 * Same as getItem for a caller that does not keep the item, so the page can still
+	 * be spilled
+	 */
+	Item findItem(
+		String key
 	) {
 		if( key != null )
 		{
 			key = key.toUpperCase();
 		}
+		if( _compact != null )
+		{
+			Item item = getCompactItem( key );
+			if( item != null )
+			{
+				return item;
+			}
+		}
+		HashSet<String> spillKeys = _spillKeys;
+		if( spillKeys != null )
+		{
+			// Items put since the spill are newer than the spilled ones
+			Item item = _itemHash.get( key );
+			if( item != null || !spillKeys.contains( key ))
+			{
+				return item;
+			}
+		}
+		unspill();
 		return _itemHash.get( key );
 	}
 	
 	public int getItemCount()
 	{
-		return _itemList.size();
+		return _spillCount + _itemList.size() + ( _compact == null ? 0 : _compact.size() );
 	}
 	
 	public String getPageName() {
@@ -67,20 +143,334 @@ public class Page
 		String key = item.getKey();
 		if( key != null && key.length() > 0 )
 		{
-			_itemHash.put(key.toUpperCase(), item );
+			key = key.toUpperCase();
+			_itemHash.put( key, item );
+			if( _compact != null )
+			{
+				replaceCompactKey( key );
+			}
 		}
 		_itemList.add( item );
+		_firstKeyed = null;
 	}
 	
 	public void remove(
 			Item item
 	) {
+		load();
 		String key = item.getKey();
 		if( key != null && key.length() > 0 )
 		{
 			_itemHash.remove( key.toUpperCase() );
 		}
 		_itemList.remove( item );
+		_firstKeyed = null;
+	}
+
+	/**
+	 * Finds the first item of a class whose key is not blank.  Used for singletons such
+	 * as the facility, which are referenced without a row name.  The item is kept
+	 * until the page changes so repeated calls don't scan the page
+	 * @return The item or null if there is none
+	 */
+	public <T extends Item> T getFirstKeyedItem(
+		Class<T> type
+	) {
+		FirstKeyed first = _firstKeyed;
+		if( first == null || first._type != type )
+		{
+			Item item = null;
+			Iterator<Item> itr = iterator();
+			while( itr.hasNext() )
+			{
+				Item next = itr.next();
+				if( next.getKey() != null && next.getKey().trim().length() > 0 && type.isInstance( next ))
+				{
+					item = next;
+					break;
+				}
+			}
+			// Kept when nothing is found too, so a page without one isn't scanned again
+			first = new FirstKeyed( type, item );
+			_firstKeyed = first;
+		}
+		return type.cast( first._item );
+	}
+
+	/**
+	 * An item found by getFirstKeyedItem, or null, and the class it was found for
+	 */
+	private static final class FirstKeyed
+	{
+		private final Class<?> _type;
+		private final Item     _item;
+
+		private FirstKeyed(
+			Class<?> type,
+			Item     item
+		) {
+			_type = type;
+			_item = item;
+		}
+	}
+
+	/**
+	 * Adds an extension attribute without creating the ItemATTRIBUTE.  getItem creates
+	 * only the attribute it finds.  The rest are created the first time the page is
+	 * iterated, in the position they would have had if they had been put
+	 */
+	synchronized void putCompact(
+		ExtensionAttribute attrib
+	) {
+		if( _compact == null )
+		{
+			_compact     = new ArrayList<ExtensionAttribute>();
+			_compactPos  = new int[16];
+			_compactKeys = new HashMap<String, Integer>();
+		}
+		if( _compact.size() == _compactPos.length )
+		{
+			_compactPos = Arrays.copyOf( _compactPos, _compactPos.length * 2 );
+		}
+		_compactPos[_compact.size()] = _spillCount + _itemList.size() + _compact.size();
+		_compactKeys.put( attrib.getKey(), _compact.size() );
+		_compact.add( attrib );
+	}
+
+	/**
+	 * Creates the compact attribute that is the last item put with a key, if there
+	 * is one.  The other compact attributes stay compact
+	 * @param key Upper case key
+	 */
+	private synchronized Item getCompactItem(
+		String key
+	) {
+		if( _compact == null )
+		{
+			return null;
+		}
+		Integer index = _compactKeys.get( key );
+		if( index == null )
+		{
+			return null;
+		}
+		int i = index.intValue();
+		if( _compactItems == null || i >= _compactItems.length )
+		{
+			_compactItems = _compactItems == null ? new ItemATTRIBUTE[_compactPos.length] : Arrays.copyOf( _compactItems, _compactPos.length );
+		}
+		if( _compactItems[i] == null )
+		{
+			_compactItems[i] = _compact.get( i ).materialize();
+		}
+		return _compactItems[i];
+	}
+
+	/**
+	 * An item has been put with a key after any compact attribute with that key
+	 */
+	private synchronized void replaceCompactKey(
+		String key
+	) {
+		if( _compactKeys != null )
+		{
+			_compactKeys.remove( key );
+		}
+	}
+
+	/**
+	 * Reads back spilled items and materializes compact attributes.  Called before
+	 * the page is searched by several threads, so they only read it.  The items can
+	 * then be held outside the page, so it is not spilled again
+	 */
+	void load()
+	{
+		_shared = true;
+		unspill();
+		if( _compact != null )
+		{
+			materialize();
+		}
+	}
+
+	private synchronized void materialize()
+	{
+		ArrayList<ExtensionAttribute> compact = _compact;
+		int[]                         pos     = _compactPos;
+		if( compact == null )
+		{
+			return;
+		}
+
+		ItemATTRIBUTE[] attribs = new ItemATTRIBUTE[compact.size()];
+		for( int i = 0; i < attribs.length; i++ )
+		{
+			if( _compactItems != null && i < _compactItems.length && _compactItems[i] != null )
+			{
+				attribs[i] = _compactItems[i];
+			}
+			else
+			{
+				attribs[i] = compact.get( i ).materialize();
+			}
+		}
+
+		// Merge into the item list in the order the items were added
+		LinkedList<Item> items = new LinkedList<Item>();
+		int next = 0;
+		for( Item item : _itemList )
+		{
+			while( next < attribs.length && pos[next] == items.size() )
+			{
+				items.add( attribs[next++] );
+			}
+			items.add( item );
+		}
+		while( next < attribs.length )
+		{
+			items.add( attribs[next++] );
+		}
+		_itemList   = items;
+		_firstKeyed = null;
+
+		// Only attributes that are still the last item put with their key replace
+		// what is in the hash
+		for( Map.Entry<String, Integer> entry : _compactKeys.entrySet() )
+		{
+			_itemHash.put( entry.getKey(), attribs[entry.getValue().intValue()] );
+		}
+
+		_compact      = null;
+		_compactPos   = null;
+		_compactKeys  = null;
+		_compactItems = null;
+	}
+
+	/**
+	 * Marks the items of the page as held outside it, such as by an ItemSink, so the
+	 * page is never spilled
+	 */
+	void share()
+	{
+		_shared = true;
+	}
+
+	/**
+	 * @return true if the items are held in a spill file
+	 */
+	public boolean isSpilled()
+	{
+		return _spillFile != null;
+	}
+
+	/**
+	 * Writes the items to a file in a directory and releases them, keeping only their
+	 * keys.  They are read back the first time the page is iterated or getItem is
+	 * asked for a spilled key.  Items can still be put while the page is spilled.
+	 * <p>
+	 * The items read back are copies, so anything still holding an original would
+	 * see an item that is no longer in the page.  A page is therefore only spilled
+	 * until one of its items is handed out by getItem, iterator, load or an ItemSink.
+	 * Items must not refer to items on other pages while they are spilled, since
+	 * those would be copied too; attributes and documents only get their references
+	 * when the references are resolved, after the page is loaded
+	 * @return false if the page was not spilled because it is empty, already
+	 *         spilled or its items may be held outside it
+	 * @throws IOException If an item can't be written.  The page is unchanged
+	 */
+	synchronized boolean spill(
+		File dir
+	)
+		throws IOException
+	{
+		if( _shared || _spillFile != null || _itemList.isEmpty() )
+		{
+			return false;
+		}
+		// Compact attributes refer to items on other pages, so they stay in memory.
+		// Their positions count the spilled items, which are read back in place
+		File file = File.createTempFile( "page", ".spill", dir );
+		file.deleteOnExit();
+		ObjectOutputStream out = null;
+		try
+		{
+			out = new ObjectOutputStream( new BufferedOutputStream( new DeflaterOutputStream( new FileOutputStream( file ), new Deflater( Deflater.BEST_SPEED ), 64 * 1024 )));
+			// Written as one stream so items in both collections are read back once
+			out.writeObject( _itemList );
+			out.writeObject( _itemHash );
+			out.close();
+			out = null;
+		}
+		catch( IOException e )
+		{
+			if( out != null )
+			{
+				try
+				{
+					out.close();
+				}
+				catch( IOException e2 ) { /* Ignore */ }
+			}
+			file.delete();
+			throw e;
+		}
+		_spillCount = _itemList.size();
+		_spillKeys  = new HashSet<String>( _itemHash.keySet() );
+		_itemList   = new LinkedList<Item>();
+		_itemHash   = new ConcurrentHashMap<String, Item>();
+		_spillFile  = file;
+		return true;
+	}
+
+	/**
+	 * Reads the items back from the spill file, ahead of any put since the spill.
+	 * The page then holds the copies read back in place of the items that were put
+	 */
+	@SuppressWarnings("unchecked")
+	private void unspill()
+	{
+		if( _spillFile == null )
+		{
+			return;
+		}
+		synchronized( this )
+		{
+			if( _spillFile == null )
+			{
+				return;
+			}
+			ObjectInputStream in = null;
+			try
+			{
+				in = new ObjectInputStream( new BufferedInputStream( new InflaterInputStream( new FileInputStream( _spillFile ), new Inflater(), 64 * 1024 )));
+				LinkedList<Item>                items = (LinkedList<Item>)in.readObject();
+				ConcurrentHashMap<String, Item> hash = (ConcurrentHashMap<String, Item>)in.readObject();
+				items.addAll( _itemList );
+				hash.putAll( _itemHash );
+				_itemList = items;
+				_itemHash = hash;
+			}
+			catch( Exception e )
+			{
+				// The file was written by this process, so this is not expected
+				throw new IllegalStateException( "Cannot read spilled page " + _pageName, e );
+			}
+			finally
+			{
+				if( in != null )
+				{
+					try
+					{
+						in.close();
+					}
+					catch( IOException e ) { /* Ignore */ }
+				}
+			}
+			_spillFile.delete();
+			_spillCount = 0;
+			_spillFile  = null;
+			_spillKeys  = null;
+		}
 	}
 
 	public String[] getColumnNames()
@@ -120,6 +120,81 @@ public interface Parser {
 	 */
 	public static final long FLAG_ALL_CONTACTS_ARE_COMPANIES = 0x0101;
 
+	/**
+	 * Read Excel work books with the streaming event model tokenizers instead of
+	 * loading the entire work book into memory.  Formula cells use the value cached
+	 * in the file rather than being re-evaluated 
+	 */
+	public static final long FLAG_STREAM_EXCEL           = 0x0200;
+	/**
+	 * CSV files are memory mapped and their rows are bound to items on several
+	 * threads.  Items are still added to the parse tree in file order
+	 */
+	public static final long FLAG_PARALLEL_CSV           = 0x0400;
+	/**
+	 * Excel formula cells use the result saved in the work book instead of being
+	 * evaluated.  Cells with no saved result are still evaluated
+	 */
+	public static final long FLAG_CACHED_FORMULAS        = 0x0800;
+	/**
+	 * Each sheet is loaded as a pipeline: rows are read on one thread, bound to items
+	 * by a pool of threads and added to the parse tree in file order by the calling
+	 * thread.  Helps most with Excel input where reading each cell is expensive
+	 */
+	public static final long FLAG_PIPELINE               = 0x1000;
+	/**
+	 * Input files are parsed at the same time, each on its own thread.  The parsed
+	 * rows are added to the parse tree in the same file and sheet order as a
+	 * sequential load, so IDs and duplicate handling do not change
+	 */
+	public static final long FLAG_PARALLEL_FILES         = 0x2000;
+	/**
+	 * The selected tabs of a work book are read at the same time, each through its
+	 * own cursor on its own thread.  The tabs are added to the parse tree in the
+	 * usual tab order
+	 */
+	public static final long FLAG_PARALLEL_TABS          = 0x4000;
+	/**
+	 * Attributes created from extension columns hold only the column and the value
+	 * and share the row they came from until they are first read.  Saves memory on
+	 * sheets with many extension columns.  Requires FLAG_CONVERT_EXTENSION_COLS
+	 */
+	public static final long FLAG_COMPACT_ATTRIBUTES     = 0x8000;
+	/**
+	 * Cells with the same value share one String, taken from a bounded pool that is
+	 * used for the whole load.  Columns whose values seldom repeat don't use the
+	 * pool.  See BIMProjectParser.getStringPool for how much was saved
+	 */
+	public static final long FLAG_STRING_POOL            = 0x10000;
+	/**
+	 * References are looked up on a pool of threads, a page at a time, and then
+	 * linked on the calling thread in page order.  Messages are logged in the same
+	 * order as a single threaded resolve
+	 */
+	public static final long FLAG_PARALLEL_RESOLVE       = 0x20000;
+	/**
+	 * The references item classes declare with ReferenceSpec are looked up for a
+	 * whole page at a time, once for each distinct key, before the items of the
+	 * page are resolved
+	 */
+	public static final long FLAG_JOIN_REFERENCES        = 0x40000;
+	/**
+	 * Between sheets, the ATTRIBUTE and DOCUMENT pages are written to temporary files
+	 * when the heap is over the budget set with BIMProjectParser.setHeapBudget.  Their
+	 * keys stay in memory, so a page is only read back when it is iterated or a
+	 * lookup finds a key that was spilled.  A page is no longer spilled once its items
+	 * have been handed out, including to an ItemSink, since the items read back are
+	 * copies
+	 */
+	public static final long FLAG_SPILL_PAGES            = 0x80000;
+	/**
+	 * Local CSV files are memory mapped and tokenized in place rather than read as a
+	 * stream.  The mapping is released when the input is closed where the JVM allows
+	 * it, otherwise when it is garbage collected, and until then the file can't be
+	 * deleted on Windows.  Implied by FLAG_PARALLEL_CSV
+	 */
+	public static final long FLAG_MAP_CSV                = 0x100000;
+
 	// Cannot connect to URL {0} Error {1}
 	public static final String ERR_BAD_URL                    = "bad-url";
 	// Import of Excel files from a URL is not supported: {0}
@@ -0,0 +1,118 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+/**
+ * Counters for the pipelined load enabled by FLAG_PIPELINE.  The queue depth is the
+ * number of batches between the reader and the committer, sampled each time the
+ * reader adds a batch.  A full queue means binding or committing is the bottleneck,
+ * an empty one means reading is.
+ */
+public class PipelineStats
+{
+	private long _batches        = 0;
+	private long _rows           = 0;
+	private long _depthTotal     = 0;
+	private int  _maxDepth       = 0;
+	private long _readerStall    = 0;
+	private long _committerStall = 0;
+
+	/**
+	 * Called by the reader before it adds a batch
+	 */
+	void addBatch(
+		int rows,
+		int depth
+	) {
+		_batches++;
+		_rows       += rows;
+		_depthTotal += depth;
+		_maxDepth    = Math.max( _maxDepth, depth );
+	}
+
+	void addReaderStall(
+		long nanos
+	) {
+		_readerStall += nanos;
+	}
+
+	void addCommitterStall(
+		long nanos
+	) {
+		_committerStall += nanos;
+	}
+
+	/**
+	 * Adds the counters from another load
+	 */
+	public void add(
+		PipelineStats stats
+	) {
+		_batches        += stats._batches;
+		_rows           += stats._rows;
+		_depthTotal     += stats._depthTotal;
+		_maxDepth        = Math.max( _maxDepth, stats._maxDepth );
+		_readerStall    += stats._readerStall;
+		_committerStall += stats._committerStall;
+	}
+
+	public long getBatchCount()
+	{
+		return _batches;
+	}
+
+	public long getRowCount()
+	{
+		return _rows;
+	}
+
+	public int getMaxQueueDepth()
+	{
+		return _maxDepth;
+	}
+
+	public double getAverageQueueDepth()
+	{
+		return _batches == 0 ? 0 : (double)_depthTotal / _batches;
+	}
+
+	/**
+	 * @return Time the reader spent waiting for room in the queue
+	 */
+	public long getReaderStallMillis()
+	{
+		return _readerStall / 1000000;
+	}
+
+	/**
+	 * @return Time the committer spent waiting for the next batch to be read and bound
+	 */
+	public long getCommitterStallMillis()
+	{
+		return _committerStall / 1000000;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "batches=" + _batches + " rows=" + _rows + " maxDepth=" + _maxDepth
+			+ " avgDepth=" + String.format( "%.1f", getAverageQueueDepth() )
+			+ " readerStallMs=" + getReaderStallMillis()
+			+ " committerStallMs=" + getCommitterStallMillis();
+	}
+}
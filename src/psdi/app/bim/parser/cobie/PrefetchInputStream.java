@@ -0,0 +1,193 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads another stream on its own thread, a few blocks ahead of the reader.  Used
+ * for compressed input so decompression runs alongside tokenizing.  Only a fixed
+ * number of blocks are buffered, so memory use does not depend on the size of the
+ * stream.
+ */
+class   PrefetchInputStream
+    extends InputStream
+    implements Runnable
+{
+	private static final int    BLOCK_SIZE   = 64 * 1024;
+	private static final int    BLOCKS_AHEAD = 4;
+	private static final byte[] END          = new byte[0];
+
+	private final InputStream                 _source;
+	private final ArrayBlockingQueue<byte[]>  _blocks = new ArrayBlockingQueue<byte[]>( BLOCKS_AHEAD );
+	private volatile boolean                  _closed = false;
+	private volatile IOException              _error  = null;
+
+	private byte[]                            _block  = null;
+	private int                               _pos    = 0;
+	private boolean                           _eof    = false;
+
+	/**
+	 * Starts reading the source
+	 * @param source Stream to read.  It is closed when it has been read or when this
+	 *               stream is closed
+	 * @param name   Name for the reader thread
+	 */
+	PrefetchInputStream(
+		InputStream source,
+		String      name
+	) {
+		_source = source;
+		Thread thread = new Thread( this, "Prefetch " + name );
+		thread.setDaemon( true );
+		thread.start();
+	}
+
+	public void run()
+	{
+		try
+		{
+			while( !_closed )
+			{
+				byte block[] = new byte[BLOCK_SIZE];
+				int  len     = 0;
+				int  count   = 0;
+				while( len < block.length && ( count = _source.read( block, len, block.length - len )) >= 0 )
+				{
+					len += count;
+				}
+				if( len > 0 && !put( len < block.length ? Arrays.copyOf( block, len ) : block ))
+				{
+					return;
+				}
+				if( count < 0 )
+				{
+					break;
+				}
+			}
+		}
+		catch( IOException e )
+		{
+			_error = e;
+		}
+		catch( InterruptedException e )
+		{
+			return;
+		}
+		finally
+		{
+			try
+			{
+				_source.close();
+			}
+			catch( IOException e ) { /* Ignore */ }
+		}
+
+		try
+		{
+			put( END );
+		}
+		catch( InterruptedException e ) { /* Ignore */ }
+	}
+
+	/**
+	 * Waits for room in the queue
+	 * @return false if the stream was closed while waiting
+	 */
+	private boolean put(
+		byte block[]
+	)
+		throws InterruptedException
+	{
+		while( !_blocks.offer( block, 100, TimeUnit.MILLISECONDS ))
+		{
+			if( _closed )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read()
+		throws IOException
+	{
+		byte b[] = new byte[1];
+		int count = read( b, 0, 1 );
+		return count < 0 ? -1 : b[0] & 0xFF;
+	}
+
+	@Override
+	public int read(
+		byte b[],
+		int  off,
+		int  len
+	)
+		throws IOException
+	{
+		if( len == 0 )
+		{
+			return 0;
+		}
+		if( _block == null || _pos == _block.length )
+		{
+			if( _eof || _closed )
+			{
+				return -1;
+			}
+			try
+			{
+				_block = _blocks.take();
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new IOException( e.getLocalizedMessage(), e );
+			}
+			_pos = 0;
+			if( _block == END )
+			{
+				_eof = true;
+				if( _error != null )
+				{
+					throw _error;
+				}
+				return -1;
+			}
+		}
+		int count = Math.min( len, _block.length - _pos );
+		System.arraycopy( _block, _pos, b, off, count );
+		_pos += count;
+		return count;
+	}
+
+	/**
+	 * Stops the reader thread, which then closes the source
+	 */
+	@Override
+	public void close()
+	{
+		_closed = true;
+		_blocks.clear();
+	}
+}
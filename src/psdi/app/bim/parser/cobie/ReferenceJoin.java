@@ -0,0 +1,112 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.util.HashMap;
+
+/**
+ * The keys of a page's declared references, looked up in bulk.  Each distinct key
+ * is matched against its target page once, however many items name it, and the
+ * items then find their references here instead of searching the target page.
+ * Built before the page is resolved and only read after that, so it can be shared
+ * by the threads looking up references.
+ */
+public final class ReferenceJoin
+{
+	// Target sheet, then key as the item holds it, to the item found or null
+	private final HashMap<String, HashMap<String, Item>> _found = new HashMap<String, HashMap<String, Item>>();
+	private int                                          _keyCount = 0;
+
+	/**
+	 * Looks up the keys of every reference declared for the source sheet
+	 * @param items The items of the source sheet
+	 */
+	ReferenceJoin(
+		Parser project,
+		String sourceSheet,
+		Item   items[]
+	) {
+		for( ReferenceSpec<?> spec : ReferenceSpec.forSheet( sourceSheet ))
+		{
+			for( int i = 0; i < items.length; i++ )
+			{
+				Item item = items[i];
+				if( !spec.getItemClass().isInstance( item ))
+				{
+					continue;
+				}
+				String   sheet = spec.targetOf( item );
+				String[] keys  = spec.keysOf( item );
+				if( sheet == null || keys == null )
+				{
+					continue;
+				}
+				HashMap<String, Item> targets = _found.get( sheet );
+				if( targets == null )
+				{
+					targets = new HashMap<String, Item>();
+					_found.put( sheet, targets );
+				}
+				Page page = null;
+				for( int k = 0; k < keys.length; k++ )
+				{
+					String key = keys[k];
+					if( key == null || targets.containsKey( key ))
+					{
+						continue;
+					}
+					if( page == null )
+					{
+						page = project.getPage( sheet.toUpperCase() );
+						if( page == null )
+						{
+							break;
+						}
+					}
+					targets.put( key, page.getItem( key ));
+					_keyCount++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The item with the key on the sheet, or null if there is none.  Keys
+	 *         of specs that are not declared are looked up in the parse tree
+	 */
+	Item find(
+		Parser project,
+		String sheet,
+		String key
+	) {
+		HashMap<String, Item> targets = _found.get( sheet );
+		if( targets != null && targets.containsKey( key ))
+		{
+			return targets.get( key );
+		}
+		return project.getItem( sheet, key );
+	}
+
+	/**
+	 * @return The number of distinct keys looked up
+	 */
+	public int getKeyCount()
+	{
+		return _keyCount;
+	}
+}
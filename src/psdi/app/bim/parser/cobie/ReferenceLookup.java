@@ -0,0 +1,101 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.util.ArrayList;
+
+/**
+ * The references an item found in ItemBase.lookupReferences, held until they are
+ * applied.  Looking up changes nothing, so it can run on several threads, while
+ * applyReferences logs the messages and makes the links in page order.
+ */
+public class ReferenceLookup
+{
+	// Message keys and their parameters, in the order they are logged
+	private ArrayList<Object> _messages        = null;
+	private ItemBase          _target          = null;
+	private ItemFACILITY      _facility        = null;
+	private ItemCONTACT       _creatingContact = null;
+
+	/**
+	 * Records a data integrity message to be logged when the lookup is applied
+	 */
+	void message(
+		String key,
+		String params[]
+	) {
+		if( _messages == null )
+		{
+			_messages = new ArrayList<Object>( 4 );
+		}
+		_messages.add( key );
+		_messages.add( params );
+	}
+
+	/**
+	 * Logs the recorded messages in the order they were found
+	 */
+	void log(
+		Parser project
+	) {
+		if( _messages == null )
+		{
+			return;
+		}
+		for( int i = 0; i < _messages.size(); i += 2 )
+		{
+			project.getLogger().dataIntegrityMessage( (String)_messages.get( i ), (String[])_messages.get( i + 1 ));
+		}
+	}
+
+	/**
+	 * @return The item an attribute or document belongs to
+	 */
+	ItemBase getTarget()
+	{
+		return _target;
+	}
+
+	void setTarget(
+		ItemBase target
+	) {
+		_target = target;
+	}
+
+	ItemFACILITY getFacility()
+	{
+		return _facility;
+	}
+
+	void setFacility(
+		ItemFACILITY facility
+	) {
+		_facility = facility;
+	}
+
+	ItemCONTACT getCreatingContact()
+	{
+		return _creatingContact;
+	}
+
+	void setCreatingContact(
+		ItemCONTACT contact
+	) {
+		_creatingContact = contact;
+	}
+}
@@ -0,0 +1,159 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A reference from the items of one sheet to the items of another, named by keys
+ * the source item holds, such as the TypeName of a component.  Item classes keep a
+ * spec for each reference and take the keys they look up from it, so a ReferenceJoin
+ * always holds the keys the item asks for.  Specs are declared when their item
+ * class is loaded, and with FLAG_JOIN_REFERENCES a ReferenceJoin looks up the keys
+ * of a whole page before its references are resolved, once for each distinct key.
+ * A spec that is not declared, such as a fallback that is seldom needed, is looked
+ * up one key at a time.
+ * <p>
+ * The spec only decides how the keys are found.  The item still decides what to
+ * link and which messages to log.
+ */
+public abstract class ReferenceSpec<S extends Item>
+{
+	private static final ConcurrentHashMap<String, List<ReferenceSpec<?>>> _specs = new ConcurrentHashMap<String, List<ReferenceSpec<?>>>();
+
+	private final String   _sourceSheet;
+	private final Class<S> _itemClass;
+	private final String   _targetSheet;
+
+	/**
+	 * @param sourceSheet Sheet of the items holding the keys
+	 * @param itemClass   Class of those items.  Other items on the sheet are ignored
+	 * @param targetSheet Sheet the keys refer to, or null if each item names it
+	 */
+	protected ReferenceSpec(
+		String   sourceSheet,
+		Class<S> itemClass,
+		String   targetSheet
+	) {
+		_sourceSheet = sourceSheet.toUpperCase();
+		_itemClass   = itemClass;
+		_targetSheet = targetSheet;
+	}
+
+	/**
+	 * Adds a reference to those joined for its source sheet
+	 * @return spec
+	 */
+	static <S extends Item> ReferenceSpec<S> declare(
+		ReferenceSpec<S> spec
+	) {
+		List<ReferenceSpec<?>> specs = _specs.get( spec._sourceSheet );
+		if( specs == null )
+		{
+			specs = new CopyOnWriteArrayList<ReferenceSpec<?>>();
+			List<ReferenceSpec<?>> existing = _specs.putIfAbsent( spec._sourceSheet, specs );
+			if( existing != null )
+			{
+				specs = existing;
+			}
+		}
+		specs.add( spec );
+		return spec;
+	}
+
+	/**
+	 * @return The references declared for a sheet
+	 */
+	static List<ReferenceSpec<?>> forSheet(
+		String sheet
+	) {
+		List<ReferenceSpec<?>> specs = _specs.get( sheet.toUpperCase() );
+		if( specs == null )
+		{
+			return Collections.emptyList();
+		}
+		return specs;
+	}
+
+	public String getSourceSheet()
+	{
+		return _sourceSheet;
+	}
+
+	public Class<S> getItemClass()
+	{
+		return _itemClass;
+	}
+
+	/**
+	 * @return The sheet an item's keys refer to, or null if it names none.  Defaults
+	 *         to the sheet the reference was declared with
+	 */
+	public String getTargetSheet(
+		S item
+	) {
+		return _targetSheet;
+	}
+
+	/**
+	 * @return The keys the item refers to, or null if it has none.  Keys are matched
+	 *         the same way as Page.getItem
+	 */
+	public abstract String[] getKeys(
+		S item
+	);
+
+	/**
+	 * @param join Keys already looked up for the page, or null to search the sheet
+	 * @param key  One of the keys getKeys returned for the item, or a key derived
+	 *             from one when it is not found
+	 * @return The item the key refers to, or null if there is none
+	 */
+	Item find(
+		Parser        project,
+		ReferenceJoin join,
+		S             item,
+		String        key
+	) {
+		String sheet = getTargetSheet( item );
+		if( sheet == null )
+		{
+			return null;
+		}
+		if( join != null )
+		{
+			return join.find( project, sheet, key );
+		}
+		return project.getItem( sheet, key );
+	}
+
+	String targetOf(
+		Item item
+	) {
+		return getTargetSheet( _itemClass.cast( item ));
+	}
+
+	String[] keysOf(
+		Item item
+	) {
+		return getKeys( _itemClass.cast( item ));
+	}
+}
@@ -0,0 +1,153 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.util.Arrays;
+
+/**
+ * RowView used by the tokenizers in this package.  The tokenizer keeps one instance
+ * and refills it for each row
+ */
+class   RowBuffer
+    implements RowView
+{
+	private CharSequence[] _values = new CharSequence[32];
+	private int            _size   = 0;
+
+	RowBuffer() { }
+
+	RowBuffer(
+		String values[]
+	) {
+		_values = Arrays.copyOf( values, Math.max( values.length, 1 ), CharSequence[].class );
+		_size   = values.length;
+	}
+
+	public int size()
+	{
+		return _size;
+	}
+
+	public CharSequence get(
+		int col
+	) {
+		if( col >= _size )
+		{
+			throw new ArrayIndexOutOfBoundsException( col );
+		}
+		return _values[col];
+	}
+
+	public String getString(
+		int col
+	) {
+		CharSequence value = get( col );
+		return ( value == null ) ? null : value.toString();
+	}
+
+	/**
+	 * Empties the row for reuse
+	 */
+	void clear()
+	{
+		Arrays.fill( _values, 0, _size, null );
+		_size = 0;
+	}
+
+	/**
+	 * Sets a column, extending the row if col is past the current end
+	 */
+	void set(
+		int          col,
+		CharSequence value
+	) {
+		if( col >= _values.length )
+		{
+			_values = Arrays.copyOf( _values, Math.max( col + 1, _values.length * 2 ));
+		}
+		_values[col] = value;
+		if( col >= _size )
+		{
+			_size = col + 1;
+		}
+	}
+
+	/**
+	 * Extends or truncates the row.  New columns are missing cells
+	 */
+	void setSize(
+		int size
+	) {
+		if( size > _values.length )
+		{
+			_values = Arrays.copyOf( _values, size );
+		}
+		else if( size < _size )
+		{
+			Arrays.fill( _values, size, _size, null );
+		}
+		_size = size;
+	}
+
+	/**
+	 * @return The row as an array of Strings, as returned by InputTokenizer.getRow
+	 */
+	String[] toStrings()
+	{
+		String values[] = new String[_size];
+		for( int i = 0; i < _size; i++ )
+		{
+			if( _values[i] != null )
+			{
+				values[i] = _values[i].toString();
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return A view of values, or null if values is null
+	 */
+	static RowView wrap(
+		String values[]
+	) {
+		return values == null ? null : new RowBuffer( values );
+	}
+
+	/**
+	 * @return The strings of row, or null if row is null
+	 */
+	static String[] toStrings(
+		RowView row
+	) {
+		if( row == null )
+		{
+			return null;
+		}
+		if( row instanceof RowBuffer )
+		{
+			return ((RowBuffer)row).toStrings();
+		}
+		String values[] = new String[row.size()];
+		for( int i = 0; i < values.length; i++ )
+		{
+			values[i] = row.getString( i );
+		}
+		return values;
+	}
+}
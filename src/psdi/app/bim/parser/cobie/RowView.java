@@ -0,0 +1,44 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+/**
+ * A row returned by InputTokenizer.getRowView.  The view, and the CharSequences it
+ * returns, are reused by the tokenizer and are only valid until the next row is
+ * read.  Use getString for any value that needs to be kept.
+ */
+public interface RowView
+{
+	/**
+	 * @return The number of columns in the row.  This has the same meaning as the
+	 *         length of the array returned by getRow
+	 */
+	public int size();
+
+	/**
+	 * @param col Column index, which must be less than size()
+	 * @return The value of the column or null if the cell is missing
+	 */
+	public CharSequence get( int col );
+
+	/**
+	 * @param col Column index, which must be less than size()
+	 * @return The value of the column as a String or null if the cell is missing
+	 */
+	public String getString( int col );
+}
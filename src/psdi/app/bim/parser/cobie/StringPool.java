@@ -0,0 +1,268 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares one String between cells with the same value, such as the CreatedBy,
+ * CreatedOn and ExtSystem columns that repeat on every row.  Enabled by
+ * FLAG_STRING_POOL and shared by every file and sheet of a load.
+ * <p>
+ * The pool is a fixed size table indexed by hash.  A value that collides with
+ * another replaces it, so memory use is bounded and lookups take no locks.  Each
+ * column samples its first values and stops using the pool if too few of them
+ * repeat, so columns of names and GUIDs don't push out the values worth sharing.
+ */
+public class StringPool
+{
+	/**
+	 * Number of entries in the table
+	 */
+	public static final int DEFAULT_SIZE = 64 * 1024;
+
+	// Values sampled per column, and the share of them that must already be in the
+	// pool for the column to keep using it
+	private static final int    SAMPLE_SIZE  = 512;
+	private static final double MIN_HIT_RATE = 0.25;
+
+	// Column states
+	private static final int SAMPLING = 0;
+	private static final int ENABLED  = 1;
+	private static final int DISABLED = 2;
+
+	private final AtomicReferenceArray<String> _table;
+	private final int                          _mask;
+	private final LongAdder                    _hits       = new LongAdder();
+	private final LongAdder                    _misses     = new LongAdder();
+	private final LongAdder                    _bytesSaved = new LongAdder();
+	private final AtomicInteger                _columns    = new AtomicInteger();
+	private final AtomicInteger                _disabled   = new AtomicInteger();
+
+	/**
+	 * @param size Number of entries, rounded up to a power of 2
+	 */
+	public StringPool(
+		int size
+	) {
+		int capacity = Integer.highestOneBit( Math.max( 16, size - 1 )) << 1;
+		_table = new AtomicReferenceArray<String>( capacity );
+		_mask  = capacity - 1;
+	}
+
+	/**
+	 * @return The pooled String with the same characters as value, adding one if
+	 *         there is none
+	 */
+	public String intern(
+		CharSequence value
+	) {
+		return intern( value, null );
+	}
+
+	/**
+	 * @param sampler Column to count a hit against, or null
+	 */
+	private String intern(
+		CharSequence  value,
+		AtomicInteger sampler
+	) {
+		if( value == null )
+		{
+			return null;
+		}
+		int    len   = value.length();
+		int    index = hash( value ) & _mask;
+		String entry = _table.get( index );
+		if( entry != null && contentEquals( entry, value, len ))
+		{
+			_hits.increment();
+			if( sampler != null )
+			{
+				sampler.incrementAndGet();
+			}
+			_bytesSaved.add( sizeOf( len ));
+			return entry;
+		}
+		_misses.increment();
+		String str = value.toString();
+		_table.lazySet( index, str );
+		return str;
+	}
+
+	/**
+	 * @return A new column that decides for itself whether to use the pool
+	 */
+	Column column()
+	{
+		_columns.incrementAndGet();
+		return new Column();
+	}
+
+	/**
+	 * Empties the pool.  The counters are kept
+	 */
+	public void clear()
+	{
+		for( int i = 0; i < _table.length(); i++ )
+		{
+			_table.lazySet( i, null );
+		}
+	}
+
+	/**
+	 * @return Number of values that were already in the pool
+	 */
+	public long getHitCount()
+	{
+		return _hits.sum();
+	}
+
+	public long getMissCount()
+	{
+		return _misses.sum();
+	}
+
+	/**
+	 * @return Estimate of the heap saved by sharing values, from the size of a String
+	 *         and its char array on a 64 bit VM with compressed references
+	 */
+	public long getBytesSaved()
+	{
+		return _bytesSaved.sum();
+	}
+
+	/**
+	 * @return Number of sheet columns that were sampled
+	 */
+	public int getColumnCount()
+	{
+		return _columns.get();
+	}
+
+	/**
+	 * @return Number of sampled columns that stopped using the pool because their
+	 *         values seldom repeat
+	 */
+	public int getDisabledColumnCount()
+	{
+		return _disabled.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits=" + getHitCount() + " misses=" + getMissCount() + " saved=" + getBytesSaved()
+			+ " columns=" + getColumnCount() + " disabled=" + getDisabledColumnCount();
+	}
+
+	/**
+	 * String.hashCode, computed from the characters so a CharSequence can be looked
+	 * up without copying it, then spread so similar values use different entries
+	 */
+	private static int hash(
+		CharSequence value
+	) {
+		if( value instanceof String )
+		{
+			return value.hashCode() * 0x9E3779B9;
+		}
+		int h = 0;
+		for( int i = 0; i < value.length(); i++ )
+		{
+			h = 31 * h + value.charAt( i );
+		}
+		return h * 0x9E3779B9;
+	}
+
+	private static boolean contentEquals(
+		String       entry,
+		CharSequence value,
+		int          len
+	) {
+		if( entry == value )
+		{
+			return true;
+		}
+		if( entry.length() != len )
+		{
+			return false;
+		}
+		for( int i = 0; i < len; i++ )
+		{
+			if( entry.charAt( i ) != value.charAt( i ))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long sizeOf(
+		int len
+	) {
+		// String object plus char array header and data, each padded to 8 bytes
+		return 24 + (( 16 + 2L * len + 7 ) & ~7L );
+	}
+
+	/**
+	 * The values of one sheet column.  Every value is pooled until SAMPLE_SIZE have
+	 * been seen, after which the column only uses the pool if enough of them were
+	 * hits.  Safe to use from several threads binding the same sheet
+	 */
+	final class Column
+	{
+		private final AtomicInteger _seen  = new AtomicInteger();
+		private final AtomicInteger _found = new AtomicInteger();
+		private volatile int        _state = SAMPLING;
+
+		/**
+		 * @return The value as a String, from the pool if the column is using it
+		 */
+		String intern(
+			CharSequence value
+		) {
+			int state = _state;
+			if( state == ENABLED )
+			{
+				return StringPool.this.intern( value );
+			}
+			if( state == DISABLED )
+			{
+				return value.toString();
+			}
+
+			String str = StringPool.this.intern( value, _found );
+			if( _seen.incrementAndGet() == SAMPLE_SIZE )
+			{
+				if( _found.get() >= SAMPLE_SIZE * MIN_HIT_RATE )
+				{
+					_state = ENABLED;
+				}
+				else
+				{
+					_state = DISABLED;
+					_disabled.incrementAndGet();
+				}
+			}
+			return str;
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.text.Format;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.ExcelStyleDateFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+
+/**
+ * Converts cells to strings the same way DataFormatter.formatCellValue does, but
+ * looks up the number or date format of each cell style only once.  DataFormatter
+ * keeps the formats it builds in a map keyed by pattern, but for every numeric cell
+ * it still checks the pattern for sections and for a date format before the map
+ * lookup.  Here those results are held by style index.
+ * <p>
+ * Formats that DataFormatter treats specially, such as formats with more than one
+ * section and the zip code and SSN formats it registers itself, are passed on to
+ * DataFormatter.  An instance holds the formats of one work book and must only be
+ * used by one thread.
+ */
+final class StyleFormatCache
+{
+	// Formats DataFormatter registers in its constructor.  It looks these up before
+	// building a format, so cells that use them are left to DataFormatter
+	private static final String SPECIAL_FORMATS[] =
+	{
+		"00000\\-0000",
+		"00000-0000",
+		"000\\-00\\-0000",
+		"000-00-0000"
+	};
+
+	private final DataFormatter _formatter;
+	private StyleFormat[]       _styles = new StyleFormat[64];
+
+	StyleFormatCache()
+	{
+		this( new DataFormatter() );
+	}
+
+	/**
+	 * @param formatter Used for the formats that are not cached.  It must not have
+	 *                  had formats added to it or be set to emulate CSV output
+	 */
+	StyleFormatCache(
+		DataFormatter formatter
+	) {
+		_formatter = formatter;
+	}
+
+	/**
+	 * Same as DataFormatter.formatCellValue( cell )
+	 */
+	String formatCellValue(
+		Cell cell
+	) {
+		return formatCellValue( cell, null );
+	}
+
+	/**
+	 * Same as DataFormatter.formatCellValue( cell, evaluator )
+	 */
+	String formatCellValue(
+		Cell             cell,
+		FormulaEvaluator evaluator
+	) {
+		if( cell == null )
+		{
+			return "";
+		}
+		int cellType = cell.getCellType();
+		if( cellType == Cell.CELL_TYPE_FORMULA )
+		{
+			if( evaluator == null )
+			{
+				return cell.getCellFormula();
+			}
+			// Decided before evaluating so the formula is only evaluated once
+			if( getStyleFormat( cell ) == null )
+			{
+				return _formatter.formatCellValue( cell, evaluator );
+			}
+			cellType = evaluator.evaluateFormulaCell( cell );
+		}
+
+		switch( cellType )
+		{
+			case Cell.CELL_TYPE_NUMERIC:
+				return formatNumeric( cell );
+			case Cell.CELL_TYPE_STRING:
+				return cell.getRichStringCellValue().getString();
+			case Cell.CELL_TYPE_BOOLEAN:
+				return String.valueOf( cell.getBooleanCellValue() );
+			case Cell.CELL_TYPE_BLANK:
+				return "";
+			case Cell.CELL_TYPE_ERROR:
+				return FormulaError.forInt( cell.getErrorCellValue() ).getString();
+		}
+		throw new RuntimeException( "Unexpected celltype (" + cellType + ")" );
+	}
+
+	private String formatNumeric(
+		Cell cell
+	) {
+		StyleFormat style = getStyleFormat( cell );
+		if( style == null )
+		{
+			return _formatter.formatCellValue( cell );
+		}
+
+		double value = cell.getNumericCellValue();
+		if( style._isDate && DateUtil.isValidExcelDate( value ))
+		{
+			if( style._dateFormat == null )
+			{
+				style._dateFormat = _formatter.createFormat( cell );
+			}
+			Format format = style._dateFormat;
+			if( format instanceof ExcelStyleDateFormatter )
+			{
+				// Hint about the raw excel value
+				((ExcelStyleDateFormatter)format).setDateToBeFormatted( value );
+			}
+			Date date = cell.getDateCellValue();
+			if( format == null )
+			{
+				return date.toString();
+			}
+			return format.format( date );
+		}
+
+		if( style._numberFormat == null )
+		{
+			style._numberFormat = _formatter.createFormat( cell );
+		}
+		if( style._numberFormat == null )
+		{
+			return String.valueOf( value );
+		}
+		return completeExponent( style._numberFormat.format( Double.valueOf( value )));
+	}
+
+	/**
+	 * @return The cached formats for the style of the cell, or null if the cell must
+	 *         be formatted by DataFormatter
+	 */
+	private StyleFormat getStyleFormat(
+		Cell cell
+	) {
+		CellStyle cellStyle = cell.getCellStyle();
+		if( cellStyle == null )
+		{
+			return null;
+		}
+		int index = cellStyle.getIndex() & 0xFFFF;
+		if( index >= _styles.length )
+		{
+			_styles = Arrays.copyOf( _styles, Math.max( index + 1, _styles.length * 2 ));
+		}
+		StyleFormat style = _styles[index];
+		if( style == null )
+		{
+			style = new StyleFormat( cellStyle.getDataFormat(), cellStyle.getDataFormatString() );
+			_styles[index] = style;
+		}
+		return style._uncached ? null : style;
+	}
+
+	/**
+	 * Same as replaceFirst( "E(\\d)", "E+$1" ), which DataFormatter uses to match
+	 * Excel's E notation
+	 */
+	private static String completeExponent(
+		String value
+	) {
+		int idx = value.indexOf( 'E' );
+		while( idx >= 0 && idx + 1 < value.length() )
+		{
+			char c = value.charAt( idx + 1 );
+			if( c >= '0' && c <= '9' )
+			{
+				return value.substring( 0, idx + 1 ) + '+' + value.substring( idx + 1 );
+			}
+			idx = value.indexOf( 'E', idx + 1 );
+		}
+		return value;
+	}
+
+	/**
+	 * The formats for one cell style.  A style can need two formats since
+	 * DataFormatter only uses the date format for values that are valid dates
+	 */
+	private static final class StyleFormat
+	{
+		private final boolean _uncached;
+		private final boolean _isDate;
+		private Format        _dateFormat   = null;
+		private Format        _numberFormat = null;
+
+		StyleFormat(
+			int    formatIndex,
+			String formatString
+		) {
+			_uncached =    formatString == null
+				        || formatString.trim().length() == 0
+				        || formatString.indexOf( ';' ) >= 0
+				        || isSpecialFormat( formatString );
+			_isDate   = !_uncached && DateUtil.isADateFormat( formatIndex, formatString );
+		}
+
+		private static boolean isSpecialFormat(
+			String formatString
+		) {
+			for( int i = 0; i < SPECIAL_FORMATS.length; i++ )
+			{
+				if( SPECIAL_FORMATS[i].equals( formatString ))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Checks that StyleFormatCache formats cells exactly the same way as DataFormatter.
+ * With no arguments it checks generated .xls and .xlsx work books that cover the
+ * number and date formats found in COBie files.  Any work books named on the
+ * command line are checked as well.  Exits with status 1 if any cell differs.
+ */
+public class StyleFormatCacheTest
+{
+	private static final String FORMATS[] =
+	{
+		"General", "@", "0", "0.00", "#,##0", "#,##0.00", "0%", "0.00%", "0.00E+00",
+		"##0.0E+0", "# ?/?", "# ??/??", "m/d/yy", "yyyy-mm-dd", "d-mmm-yy", "h:mm AM/PM",
+		"h:mm:ss", "[h]:mm:ss", "mm:ss.0", "yyyy-mm-dd hh:mm:ss", "dd/mm/yyyy",
+		"$#,##0.00", "[Red]0.00", "\"Area \"0.0", "0.00 \"m2\"", "#,##0;(#,##0)",
+		"0.00;-0.00;\"zero\"", "00000-0000", "000-00-0000", "[$-409]mmmm d, yyyy"
+	};
+
+	private static final double VALUES[] =
+	{
+		0, 1, -1, 0.5, 1234.5678, -1234.5678, 1e-10, 1e15, 12345678901234.0,
+		42736.75, -5, 2958466, 3.14159e20, 0.00001, 100
+	};
+
+	private static int _checked    = 0;
+	private static int _mismatches = 0;
+
+	/**
+	 * @param args Optional work books to check
+	 */
+	public static void main(
+	    String[] args
+    )
+		throws Exception
+	{
+		check( "generated.xls",  build( new HSSFWorkbook() ));
+		check( "generated.xlsx", build( new XSSFWorkbook() ));
+		for( int i = 0; i < args.length; i++ )
+		{
+			check( args[i], WorkbookFactory.create( new File( args[i] )));
+		}
+
+		System.out.println( _checked + " cells checked, " + _mismatches + " differences" );
+		if( _mismatches > 0 )
+		{
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Adds a row for each value with a cell in each format, followed by a formula
+	 * cell and cells of the other cell types
+	 */
+	private static Workbook build(
+		Workbook workbook
+	) {
+		DataFormat dataFormat = workbook.createDataFormat();
+		int        formatCount = FORMATS.length + BuiltinFormats.getAll().length;
+		CellStyle  styles[]    = new CellStyle[formatCount];
+		for( int i = 0; i < formatCount; i++ )
+		{
+			styles[i] = workbook.createCellStyle();
+			if( i < FORMATS.length )
+			{
+				styles[i].setDataFormat( dataFormat.getFormat( FORMATS[i] ));
+			}
+			else
+			{
+				styles[i].setDataFormat( (short)( i - FORMATS.length ));
+			}
+		}
+
+		Sheet sheet = workbook.createSheet( "Formats" );
+		for( int r = 0; r < VALUES.length; r++ )
+		{
+			Row row = sheet.createRow( r );
+			for( int c = 0; c < formatCount; c++ )
+			{
+				Cell cell = row.createCell( c );
+				cell.setCellValue( VALUES[r] );
+				cell.setCellStyle( styles[c] );
+			}
+			Cell formula = row.createCell( formatCount );
+			formula.setCellFormula( "A" + ( r + 1 ) + "*2" );
+			formula.setCellStyle( styles[( r * 7 ) % formatCount] );
+
+			row.createCell( formatCount + 1 ).setCellValue( "Text " + r );
+			row.createCell( formatCount + 2 ).setCellValue( r % 2 == 0 );
+			row.createCell( formatCount + 3 ).setCellErrorValue( FormulaError.DIV0.getCode() );
+			row.createCell( formatCount + 4 );
+			Cell text = row.createCell( formatCount + 5 );
+			text.setCellFormula( "\"Name \"&" + ( r + 1 ));
+		}
+		return workbook;
+	}
+
+	private static void check(
+		String   name,
+		Workbook workbook
+	) {
+		DataFormatter    formatter = new DataFormatter();
+		StyleFormatCache cache     = new StyleFormatCache();
+		FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+
+		for( int s = 0; s < workbook.getNumberOfSheets(); s++ )
+		{
+			Iterator<Row> rows = workbook.getSheetAt( s ).rowIterator();
+			while( rows.hasNext() )
+			{
+				Iterator<Cell> cells = rows.next().cellIterator();
+				while( cells.hasNext() )
+				{
+					Cell cell = cells.next();
+					String expected;
+					String actual;
+					try
+					{
+						expected = formatter.formatCellValue( cell, evaluator );
+					}
+					catch( RuntimeException e )
+					{
+						// Not something either formatter can handle
+						continue;
+					}
+					actual = cache.formatCellValue( cell, evaluator );
+					_checked++;
+					if( !expected.equals( actual ))
+					{
+						_mismatches++;
+						System.out.println( name + " " + workbook.getSheetName( s ) + "!" + cell.getAddress()
+							+ " format \"" + cell.getCellStyle().getDataFormatString() + "\" expected \""
+							+ expected + "\" got \"" + actual + "\"" );
+					}
+
+					if( !formatter.formatCellValue( cell ).equals( cache.formatCellValue( cell )))
+					{
+						_mismatches++;
+						System.out.println( name + " " + workbook.getSheetName( s ) + "!" + cell.getAddress()
+							+ " differs without an evaluator" );
+					}
+				}
+			}
+		}
+	}
+}
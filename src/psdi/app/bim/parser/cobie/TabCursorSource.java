@@ -0,0 +1,33 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+/**
+ * Implemented by work book tokenizers that can read several tabs at the same time.
+ * A cursor reads the same work book but keeps its own position and cell formatting
+ * state, so each cursor can be used on its own thread.
+ */
+interface TabCursorSource
+{
+	/**
+	 * @return A new tokenizer over the same work book.  Closing it does not close this
+	 *         tokenizer, which must stay open until the cursor is closed
+	 */
+	InputTokenizer newCursor()
+		throws ParseException;
+}
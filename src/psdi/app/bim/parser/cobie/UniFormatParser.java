@@ -204,8 +204,8 @@ public class UniFormatParser
 		String tableId = "";
 		try
 		{
-			String values[];			
-			values = _tokenizer.getRow();
+			RowView values;			
+			values = _tokenizer.getRowView();
 			if( values == null )
 			{				
 				return null;
@@ -213,12 +213,12 @@ public class UniFormatParser
 
 			UniFormat rootClass = null;
 
-			if(values[0] != null)
-				tableId = values[0];
+			if(values.get(0) != null)
+				tableId = values.getString(0);
 			else
 				tableId = "Uniformat";	
 
-			values = _tokenizer.getRow();
+			values = _tokenizer.getRowView();
 
 			if( values == null )
 			{
@@ -226,10 +226,10 @@ public class UniFormatParser
 			}
 
 			//check for poorly formatted header row.
-			values = validateHeaderRow(values);
+			values = validateHeaderRowView(values);
 
 			//set the index value for each coloumn heading
-			values = parseHeaderRow(values);
+			values = parseHeaderRowView(values);
 
 
 
@@ -237,7 +237,7 @@ public class UniFormatParser
 
 			while( values != null )
 			{				
-				values = parseUniFormat( rootClass, values );				
+				values = parseUniFormatView( rootClass, values );				
 			}
 			return rootClass;
 		}
@@ -251,6 +251,16 @@ public class UniFormatParser
 			}
 
 
+	/**
+	 * String array form of parseUniFormatView
+	 */
+	public String[] parseUniFormat(
+			UniFormat      parentClass,
+			String[]       values) throws IOException, ParseException 
+	{
+		return RowBuffer.toStrings( parseUniFormatView( parentClass, RowBuffer.wrap( values )));
+	}
+
 	/**
 	 * 
 	 * Parse Uniformat Exel sheet and build Uniformat Tree object structure
@@ -261,9 +271,9 @@ public class UniFormatParser
 	 * @throws IOException
 	 * @throws ParseException
 	 */
-	public String[] parseUniFormat(
+	public RowView parseUniFormatView(
 			UniFormat      parentClass,
-			String[]       values) throws IOException, ParseException 
+			RowView        values) throws IOException, ParseException 
 			{	
 
 		String name  = "";
@@ -276,15 +286,15 @@ public class UniFormatParser
 		while(values != null){
 
 
-			if( values.length < LEVEL_3 ) 
+			if( values.size() < LEVEL_3 ) 
 				return null;
 
-			name = values[_idxlevel_1];
+			name = values.getString(_idxlevel_1);
 
 			// Try to skip blank lines
 			if( name == null || name.trim().length() == 0 )
 			{
-				values = _tokenizer.getRow();
+				values = _tokenizer.getRowView();
 				if( values == null )
 				{
 					return null;
@@ -294,60 +304,60 @@ public class UniFormatParser
 
 
 			//Build Level 1
-			if(values[_idxlevel_1] != null && values[_idxlevel_1].length() >= 0){
-				_uflevel_1 = buildUniformatClass(_idxlevel_1, values , LEVEL_1);
+			if(values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() >= 0){
+				_uflevel_1 = buildUniformatClassView(_idxlevel_1, values , LEVEL_1);
 				if(_uflevel_1 != null)
 					parentClass.addChild(_uflevel_1);				
 			}
 
 			///Build Level 2			
-			if(values[_idxlevel_2] != null && values[_idxlevel_2].length() >= 0){
-				_uflevel_2 = buildUniformatClass(_idxlevel_2, values , LEVEL_2);
+			if(values.get(_idxlevel_2) != null && values.get(_idxlevel_2).length() >= 0){
+				_uflevel_2 = buildUniformatClassView(_idxlevel_2, values , LEVEL_2);
 				if(_uflevel_2 != null)
 					_uflevel_1.addChild(_uflevel_2);			
 			}
 
 			//Build Level 3
-			if(values[_idxlevel_3] != null && values[_idxlevel_3].length() >= 0){
-				_uflevel_3 = buildUniformatClass(_idxlevel_3, values , LEVEL_3);			
+			if(values.get(_idxlevel_3) != null && values.get(_idxlevel_3).length() >= 0){
+				_uflevel_3 = buildUniformatClassView(_idxlevel_3, values , LEVEL_3);			
 				if(_uflevel_3 != null)
 					_uflevel_2.addChild(_uflevel_3);				
 			}	
 
 
-			values = _tokenizer.getRow();		
+			values = _tokenizer.getRowView();		
 
 
 			//Read the row data and build children for each level. 
 			while(values != null){	
 
 
-				if(values[_idxlevel_1] != null && values[_idxlevel_1].length() > 0){				
+				if(values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() > 0){				
 					//New structure
 					return values;
 				}
 
-				if(values[_idxlevel_1] != null && values[_idxlevel_1].length() > 0){	
-					values = buildLevelOneTree(parentClass, values, _idxlevel_1);					
+				if(values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() > 0){	
+					values = buildLevelOneTreeView(parentClass, values, _idxlevel_1);					
 					continue;
 				}
 
-				if(values != null && ( values[_idxlevel_1] != null && values[_idxlevel_1].length() <= 0 ) &&
-						( values[_idxlevel_2] != null && values[_idxlevel_2].length() > 0 ) &&
-						( values[_idxlevel_3] != null && values[_idxlevel_3].length() > 0 )){					
-					values = buildLevelTwoTree(_uflevel_1, values, _idxlevel_2);						
+				if(values != null && ( values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() <= 0 ) &&
+						( values.get(_idxlevel_2) != null && values.get(_idxlevel_2).length() > 0 ) &&
+						( values.get(_idxlevel_3) != null && values.get(_idxlevel_3).length() > 0 )){					
+					values = buildLevelTwoTreeView(_uflevel_1, values, _idxlevel_2);						
 					continue;
 				}
 
-				if(values != null && ( values[_idxlevel_1] != null && values[_idxlevel_1].length() <= 0 ) &&
-						( values[_idxlevel_2] != null && values[_idxlevel_2].length() <= 0 )&&
-						( values[_idxlevel_3] != null && values[_idxlevel_3].length() > 0 )){						
-					values = buildLevelThreeTree(_uflevel_2, values, _idxlevel_3);
+				if(values != null && ( values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() <= 0 ) &&
+						( values.get(_idxlevel_2) != null && values.get(_idxlevel_2).length() <= 0 )&&
+						( values.get(_idxlevel_3) != null && values.get(_idxlevel_3).length() > 0 )){						
+					values = buildLevelThreeTreeView(_uflevel_2, values, _idxlevel_3);
 					continue;
 				}	
 
 				//Read next row 
-				values = _tokenizer.getRow();
+				values = _tokenizer.getRowView();
 				if(values != null)			
 					continue;
 			}
@@ -357,7 +367,12 @@ public class UniFormatParser
 
 
 	public String[] buildLevelOneTree(UniFormat      parentClass,
-			String[]       values , int idx_level) throws IOException, ParseException{	
+			String[]       values , int idx_level) throws IOException, ParseException{
+		return RowBuffer.toStrings( buildLevelOneTreeView( parentClass, RowBuffer.wrap( values ), idx_level ));
+	}
+
+	public RowView buildLevelOneTreeView(UniFormat      parentClass,
+			RowView        values , int idx_level) throws IOException, ParseException{	
 
 
 		UniFormat _ufLevel_1 = null;
@@ -365,29 +380,29 @@ public class UniFormatParser
 		UniFormat _uflevel_3 = null;	
 
 		//Build Level 1
-		_ufLevel_1 =  buildUniformatClass(idx_level, values , LEVEL_1);
+		_ufLevel_1 =  buildUniformatClassView(idx_level, values , LEVEL_1);
 		if(_ufLevel_1 !=null)
 			parentClass.addChild(_ufLevel_1);
 
 
 		//Build Level 2
-		_uflevel_2 =  buildUniformatClass(_idxlevel_2, values , LEVEL_2);
+		_uflevel_2 =  buildUniformatClassView(_idxlevel_2, values , LEVEL_2);
 		if(_uflevel_2 !=null)
 			_ufLevel_1.addChild(_uflevel_2);		
 
 
 		//Build Level 3
-		_uflevel_3 =  buildUniformatClass(_idxlevel_3, values , LEVEL_3);
+		_uflevel_3 =  buildUniformatClassView(_idxlevel_3, values , LEVEL_3);
 		if(_uflevel_3 !=null)
 			_uflevel_2.addChild(_uflevel_3);		
 
-		values = _tokenizer.getRow();
+		values = _tokenizer.getRowView();
 
 		//Build  Level 3
-		while(values != null && ( values[_idxlevel_1] != null && values[_idxlevel_1].length() <= 0 ) &&
-				( values[_idxlevel_2] != null && values[_idxlevel_2].length() <= 0 ) &&
-				( values[_idxlevel_3] != null && values[_idxlevel_3].length() >= 0 )){
-			values = buildLevelThreeTree(_uflevel_2, values, _idxlevel_3);
+		while(values != null && ( values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() <= 0 ) &&
+				( values.get(_idxlevel_2) != null && values.get(_idxlevel_2).length() <= 0 ) &&
+				( values.get(_idxlevel_3) != null && values.get(_idxlevel_3).length() >= 0 )){
+			values = buildLevelThreeTreeView(_uflevel_2, values, _idxlevel_3);
 		}
 
 
@@ -398,45 +413,59 @@ public class UniFormatParser
 
 	public String[] buildLevelTwoTree(UniFormat      parentClass,
 			String[]       values , int idx_level) throws IOException, ParseException{
+		return RowBuffer.toStrings( buildLevelTwoTreeView( parentClass, RowBuffer.wrap( values ), idx_level ));
+	}
+
+	public RowView buildLevelTwoTreeView(UniFormat      parentClass,
+			RowView        values , int idx_level) throws IOException, ParseException{
 
 		UniFormat _uflevel_2 = null;
 		UniFormat _uflevel_3 = null;
 
 		//Build Level 2
-		_uflevel_2 =  buildUniformatClass(_idxlevel_2, values , LEVEL_2);
+		_uflevel_2 =  buildUniformatClassView(_idxlevel_2, values , LEVEL_2);
 		if(_uflevel_2 !=null)
 			parentClass.addChild(_uflevel_2);	
 
 		//Build Level 3
-		_uflevel_3 =  buildUniformatClass(_idxlevel_3, values , LEVEL_3);
+		_uflevel_3 =  buildUniformatClassView(_idxlevel_3, values , LEVEL_3);
 		if(_uflevel_3 !=null)
 			_uflevel_2.addChild(_uflevel_3);			
 
 
-		values = _tokenizer.getRow();
+		values = _tokenizer.getRowView();
 
 		//Build Level 3
-		while(values != null && ( values[_idxlevel_1] != null && values[_idxlevel_1].length() <= 0 ) &&
-				( values[_idxlevel_2] != null && values[_idxlevel_2].length() <= 0 ) &&
-				( values[_idxlevel_3] != null && values[_idxlevel_3].length() >= 0 )){
-			values = buildLevelThreeTree(_uflevel_2, values, _idxlevel_3);
+		while(values != null && ( values.get(_idxlevel_1) != null && values.get(_idxlevel_1).length() <= 0 ) &&
+				( values.get(_idxlevel_2) != null && values.get(_idxlevel_2).length() <= 0 ) &&
+				( values.get(_idxlevel_3) != null && values.get(_idxlevel_3).length() >= 0 )){
+			values = buildLevelThreeTreeView(_uflevel_2, values, _idxlevel_3);
 		}		
 		return values;	
 	}
 
 
 	public String[] buildLevelThreeTree(UniFormat      parentClass,
-			String[]       values , int idx_level) throws IOException, ParseException{		
+			String[]       values , int idx_level) throws IOException, ParseException{
+		return RowBuffer.toStrings( buildLevelThreeTreeView( parentClass, RowBuffer.wrap( values ), idx_level ));
+	}
+
+	public RowView buildLevelThreeTreeView(UniFormat      parentClass,
+			RowView        values , int idx_level) throws IOException, ParseException{		
 
 		UniFormat uniformat = null;			
-		uniformat =  buildUniformatClass(_idxlevel_3, values , LEVEL_3);
+		uniformat =  buildUniformatClassView(_idxlevel_3, values , LEVEL_3);
 		if(uniformat != null)			
 			parentClass.addChild(uniformat);			
-		values = _tokenizer.getRow();		
+		values = _tokenizer.getRowView();		
 		return values;		
 	}
 
 
+	public String[] validateHeaderRow(String[] values) throws IOException, ParseException{
+		return RowBuffer.toStrings( validateHeaderRowView( RowBuffer.wrap( values )));
+	}
+
 	/**
 	 * This method will check for poorly formatted header row and 
 	 * return the valid row for processing the header row index.
@@ -446,16 +475,16 @@ public class UniFormatParser
 	 * @throws IOException
 	 * @throws ParseException
 	 */
-	public String[] validateHeaderRow(String values[]) throws IOException, ParseException{
+	public RowView validateHeaderRowView(RowView values) throws IOException, ParseException{
 
 		while(values != null){
 			int count = 0;
-			for( int i = 0; i < values.length; i++ )
+			for( int i = 0; i < values.size(); i++ )
 			{	
-				if(values[i] == null) 
+				if(values.get(i) == null) 
 					continue;
-				String _title = values[i] + "(.*)";
-				if( values[i].length() >= 1 && ( values[i].equalsIgnoreCase( "Level I" ) || TITLE_LEVEL_1.matches( _title )))
+				String _title = values.getString(i) + "(.*)";
+				if( values.get(i).length() >= 1 && ( values.getString(i).equalsIgnoreCase( "Level I" ) || TITLE_LEVEL_1.matches( _title )))
 				{
 					count = 1;
 					break;
@@ -465,37 +494,41 @@ public class UniFormatParser
 			if(count == 1) 
 				break;
 			else
-				values = _tokenizer.getRow();
+				values = _tokenizer.getRowView();
 		}		
 		return values;
 	}
 
 
+	public String[] parseHeaderRow(String[] values) throws IOException, ParseException {
+		return RowBuffer.toStrings( parseHeaderRowView( RowBuffer.wrap( values )));
+	}
+
 	/**
 	 * set the column index for each level
 	 * @throws ParseException 
 	 * @throws IOException 
 	 */
-	public String[] parseHeaderRow(String values[]) throws IOException, ParseException {	
+	public RowView parseHeaderRowView(RowView values) throws IOException, ParseException {	
 
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			if(values[i] == null) continue;
-			String _title = values[i] + "(.*)";
-			if( TITLE_LEVEL_1.matches( _title ) || values[i].equalsIgnoreCase("Level I"))
+			if(values.get(i) == null) continue;
+			String _title = values.getString(i) + "(.*)";
+			if( TITLE_LEVEL_1.matches( _title ) || values.getString(i).equalsIgnoreCase("Level I"))
 			{
 				_idxlevel_1 = i;
 				break;
 			}			
 		}
 
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
 
-			if( values[i] != null &&  values[i].length() > 0){
-				String _title = values[i] + "(.*)";
+			if( values.get(i) != null &&  values.get(i).length() > 0){
+				String _title = values.getString(i) + "(.*)";
 
-				if( TITLE_LEVEL_2.matches( _title ) || values[i].equalsIgnoreCase("Level II"))
+				if( TITLE_LEVEL_2.matches( _title ) || values.getString(i).equalsIgnoreCase("Level II"))
 				{
 					_idxlevel_2 = i;
 					break;
@@ -503,49 +536,49 @@ public class UniFormatParser
 			}
 
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			if( values[i] != null &&  values[i].length() > 0){
-				String _title = values[i] + "(.*)";
-				if( TITLE_LEVEL_3.matches( _title ) || values[i].equalsIgnoreCase("Level III"))
+			if( values.get(i) != null &&  values.get(i).length() > 0){
+				String _title = values.getString(i) + "(.*)";
+				if( TITLE_LEVEL_3.matches( _title ) || values.getString(i).equalsIgnoreCase("Level III"))
 				{
 					_idxlevel_3 = i;
 					break;
 				}
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			if(values[i] == null) continue;
+			if(values.get(i) == null) continue;
 
-			String _title = values[i] + "(.*)";
-			if( TITLE_LEVEL_4.matches( _title ) || values[i].equalsIgnoreCase("Level IV"))
+			String _title = values.getString(i) + "(.*)";
+			if( TITLE_LEVEL_4.matches( _title ) || values.getString(i).equalsIgnoreCase("Level IV"))
 			{
 				_idxlevel_4 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String _title = values[i] + "(.*)";
+			String _title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_5.matches( _title ))
 			{
 				_idxlevel_5 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String _title = values[i] + "(.*)";
+			String _title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_6.matches( _title ))
 			{
 				_idxlevel_6 = i;
 				break;
 			}
 		}
-		for( int i = 0; i < values.length; i++ )
+		for( int i = 0; i < values.size(); i++ )
 		{
-			String _title = values[i] + "(.*)";
+			String _title = values.getString(i) + "(.*)";
 			if( TITLE_LEVEL_7.matches( _title ))
 			{
 				_idxlevel_7 = i;
@@ -554,11 +587,11 @@ public class UniFormatParser
 		}
 
 		
-		values = _tokenizer.getRow();	
+		values = _tokenizer.getRowView();	
 		
 		//check for Poorly formated in GSA xls sheet
 		//If 0th index has no data, point _idxlevel_1 level to 1st index.
-		if(values[0] != null && values[0].length() <= 0){
+		if(values.get(0) != null && values.get(0).length() <= 0){
 			_idxlevel_1 = 1;
 		}	
 		
@@ -569,6 +602,10 @@ public class UniFormatParser
 
 
 
+	public UniFormat buildUniformatClass(int idx_level,String[]  values , int level){
+		return buildUniformatClassView( idx_level, RowBuffer.wrap( values ), level );
+	}
+
 	/**
 	 * 
 	 * Build Uniformat object for xls data
@@ -577,19 +614,19 @@ public class UniFormatParser
 	 * @param values
 	 * @return
 	 */
-	public UniFormat buildUniformatClass(int idx_level,String[] values , int level){
+	public UniFormat buildUniformatClassView(int idx_level,RowView  values , int level){
 		UniFormat uobj = null;
 
-		if(values[idx_level] != null && values[idx_level].length() > 0){
+		if(values.get(idx_level) != null && values.get(idx_level).length() > 0){
 
-			UniFormatNumber  ufn = new UniFormatNumber(values[idx_level] , level);
+			UniFormatNumber  ufn = new UniFormatNumber(values.getString(idx_level) , level);
 			if(ufn.isValid()){				
 				uobj = new UniFormat( ufn, null );
 				if(uobj._title != null && uobj._title.length() <= 0){
 					if(idx_level == _idxlevel_1 || idx_level == _idxlevel_2 || idx_level == _idxlevel_3)
-						uobj._title = values[idx_level+1];
+						uobj._title = values.getString(idx_level+1);
 					else
-						uobj._title = values[idx_level];
+						uobj._title = values.getString(idx_level);
 				}	
 
 				return uobj;
@@ -0,0 +1,445 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Hashtable;
+
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+
+/**
+ * Reads BIFF8 .xls work books from the HSSF record stream without building an
+ * HSSFWorkbook.  The work book globals (sheet directory, shared strings and formats)
+ * are read once when the file is opened.  Selecting a tab positions a record stream
+ * at the sheet's BOF record and rows are assembled from the cell records as they
+ * are read, so memory use is bounded by the shared string table and the widest row.
+ * <p>
+ * Cell values are converted to strings the same way DataFormatter does for
+ * XlsInputTokenizer.  Formula cells use the result cached in the file since there
+ * is no work book to evaluate them against.
+ */
+public class   XlsEventInputTokenizer
+    implements InputTokenizer
+{
+	private final String                    _fileName;
+	private NPOIFSFileSystem                _fs          = null;
+	private String                          _docName     = null;
+	private final DataFormatter             _formatter   = new DataFormatter();
+	private SSTRecord                       _sst         = null;
+	private boolean                         _date1904    = false;
+
+	// Upper case sheet name to the offset of the sheet's BOF record in the work book stream
+	private final Hashtable<String, Integer> _sheetBOF   = new Hashtable<String, Integer>();
+	// Custom number formats by format index
+	private final Hashtable<Integer, String> _formats    = new Hashtable<Integer, String>();
+	// Format index for each extended format (cell style) record in work book order
+	private short[]                          _xfFormat   = new short[64];
+	private int                              _xfCount    = 0;
+	// Format string for each extended format record, resolved on first use
+	private String[]                         _xfString   = new String[0];
+
+	private InputStream                      _sheetStream = null;
+	private RecordFactoryInputStream         _records     = null;
+	private IOException                      _tabError    = null;
+	// First cell record of the next row, read while looking for the end of the current row
+	private Record                           _pending     = null;
+
+	// Reused for every row
+	private final RowBuffer                  _view        = new RowBuffer();
+
+	public XlsEventInputTokenizer(
+		String fileName
+	)
+	    throws ParseException
+	{
+		_fileName = fileName;
+		try
+		{
+			_fs      = new NPOIFSFileSystem( new File( fileName ), true );
+			_docName = HSSFWorkbook.getWorkbookDirEntryName( _fs.getRoot() );
+			readGlobals();
+		}
+		catch( IOException e )
+		{
+			close();
+        	String params[] = { fileName, Parser.SHEET_EXCEL, CobieParser.msgFromException( e ) };
+        	throw new ParseException( Parser.ERR_FILE_OPEN, params );
+		}
+		catch( Exception e )
+		{
+			// Not an OLE2 file, an old BIFF5 work book, encrypted, or corrupted
+			close();
+			String params[] = { fileName, CobieParser.msgFromException( e ) };
+			throw new ParseException( Parser.ERR_INVALID_XLS_FILE_ERROR, params );
+		}
+	}
+
+	public boolean setCurrentTab(
+	    String name
+    ) {
+		closeSheet();
+		_tabError = null;
+		if( name == null )
+		{
+			return false;
+		}
+		Integer bof = _sheetBOF.get( name.toUpperCase() );
+		if( bof == null )
+		{
+			return false;
+		}
+		try
+		{
+			_sheetStream = _fs.createDocumentInputStream( _docName );
+			long toSkip = bof.longValue();
+			while( toSkip > 0 )
+			{
+				long skipped = _sheetStream.skip( toSkip );
+				if( skipped <= 0 )
+				{
+					throw new IOException( "BOF offset " + bof + " is past the end of the work book" );
+				}
+				toSkip -= skipped;
+			}
+			_records = new RecordFactoryInputStream( _sheetStream, false );
+		}
+		catch( Exception e )
+		{
+			// Reported on the first read so the caller sees it as a read error for the tab
+			_tabError = ( e instanceof IOException ) ? (IOException)e : new IOException( CobieParser.msgFromException( e ), e );
+			closeSheet();
+		}
+		return true;
+	}
+
+	public String[] getRow()
+		throws IOException, CellReadException
+	{
+		if( getRowView() == null )
+		{
+			return null;
+		}
+		return _view.toStrings();
+	}
+
+	public RowView getRowView()
+		throws IOException, CellReadException
+	{
+		if( _tabError != null )
+		{
+			IOException e = _tabError;
+			_tabError = null;
+			throw e;
+		}
+		if( _records == null )
+		{
+			return null;
+		}
+
+		try
+		{
+			return readRow();
+		}
+		catch( RuntimeException e )
+		{
+			// The record layer reports corrupt records as runtime exceptions
+			closeSheet();
+			throw new IOException( CobieParser.msgFromException( e ), e );
+		}
+	}
+
+	public void close()
+	{
+		closeSheet();
+		if( _fs != null )
+		{
+			try
+			{
+				_fs.close();
+			}
+			catch( IOException e ) { /* Ignore */ }
+		}
+		_fs  = null;
+		_sst = null;
+	}
+
+	public String getFileName()
+	{
+		return _fileName;
+	}
+
+	/**
+	 * Assembles the next row from the cell records.  Rows with no cell records are
+	 * not reported, which matches the row iterator used by XlsInputTokenizer. The
+	 * whole row is consumed even when a cell cannot be converted so the next call
+	 * starts on the next row.
+	 */
+	private RowView readRow()
+		throws CellReadException
+	{
+		int rowNum    = -1;
+		int badCell   = -1;
+		// Column of a formula whose string result is in a later StringRecord
+		int stringCol = -1;
+		_view.clear();
+
+		while( true )
+		{
+			Record record = _pending;
+			_pending = null;
+			if( record == null )
+			{
+				record = _records.nextRecord();
+			}
+			if( record == null || record instanceof EOFRecord )
+			{
+				closeSheet();
+				break;
+			}
+			if( record instanceof StringRecord )
+			{
+				// Follows the formula, after any SHRFMLA, ARRAY or TABLE record
+				if( stringCol >= 0 )
+				{
+					_view.set( stringCol, ((StringRecord)record).getString() );
+					stringCol = -1;
+				}
+				continue;
+			}
+			if( !( record instanceof CellValueRecordInterface ))
+			{
+				continue;
+			}
+
+			CellValueRecordInterface cell = (CellValueRecordInterface)record;
+			if( rowNum < 0 )
+			{
+				rowNum = cell.getRow();
+			}
+			else if( cell.getRow() != rowNum )
+			{
+				_pending = record;
+				break;
+			}
+
+			int col = cell.getColumn();
+			String value;
+			try
+			{
+				value = cellValue( record );
+			}
+			catch( Throwable t )
+			{
+				if( badCell < 0 )
+				{
+					badCell = col;
+				}
+				continue;
+			}
+
+			_view.set( col, value );
+			stringCol = -1;
+			if( record instanceof FormulaRecord && ((FormulaRecord)record).hasCachedResultString() )
+			{
+				stringCol = col;
+			}
+		}
+
+		if( rowNum < 0 )
+		{
+			return null;
+		}
+		if( badCell >= 0 )
+		{
+			throw new CellReadException( badCell );
+		}
+		return _view;
+	}
+
+	private String cellValue(
+		Record record
+	) {
+		if( record instanceof LabelSSTRecord )
+		{
+			return _sst.getString( ((LabelSSTRecord)record).getSSTIndex() ).getString();
+		}
+		if( record instanceof NumberRecord )
+		{
+			NumberRecord number = (NumberRecord)record;
+			return formatNumber( number.getValue(), number.getXFIndex() );
+		}
+		if( record instanceof FormulaRecord )
+		{
+			FormulaRecord formula = (FormulaRecord)record;
+			if( formula.hasCachedResultString() )
+			{
+				// Filled in by readRow from the StringRecord that follows
+				return "";
+			}
+			switch( formula.getCachedResultType() )
+			{
+				case Cell.CELL_TYPE_BOOLEAN:
+					return formula.getCachedBooleanValue() ? "TRUE" : "FALSE";
+				case Cell.CELL_TYPE_ERROR:
+					return FormulaError.forInt( formula.getCachedErrorValue() ).getString();
+				default:
+					return formatNumber( formula.getValue(), formula.getXFIndex() );
+			}
+		}
+		if( record instanceof BoolErrRecord )
+		{
+			BoolErrRecord boolErr = (BoolErrRecord)record;
+			if( boolErr.isBoolean() )
+			{
+				return boolErr.getBooleanValue() ? "TRUE" : "FALSE";
+			}
+			return FormulaError.forInt( boolErr.getErrorValue() ).getString();
+		}
+		if( record instanceof LabelRecord )
+		{
+			return ((LabelRecord)record).getValue();
+		}
+		// BlankRecord and anything else with no value
+		return "";
+	}
+
+	private String formatNumber(
+		double value,
+		int    xfIndex
+	) {
+		if( xfIndex >= _xfCount )
+		{
+			return _formatter.formatRawCellContents( value, 0, BuiltinFormats.getBuiltinFormat( 0 ), _date1904 );
+		}
+		if( _xfString[xfIndex] == null )
+		{
+			int    fmtIndex  = _xfFormat[xfIndex];
+			String fmtString = _formats.get( fmtIndex );
+			if( fmtString == null )
+			{
+				fmtString = BuiltinFormats.getBuiltinFormat( fmtIndex );
+			}
+			if( fmtString == null )
+			{
+				fmtString = BuiltinFormats.getBuiltinFormat( 0 );
+			}
+			_xfString[xfIndex] = fmtString;
+		}
+		return _formatter.formatRawCellContents( value, _xfFormat[xfIndex], _xfString[xfIndex], _date1904 );
+	}
+
+	/**
+	 * Reads the work book globals up to their EOF record, collecting the sheet directory,
+	 * the shared string table and the cell formats
+	 */
+	private void readGlobals()
+		throws IOException
+	{
+		InputStream is = _fs.createDocumentInputStream( _docName );
+		try
+		{
+			RecordFactoryInputStream records = new RecordFactoryInputStream( is, false );
+			Record record;
+			while( ( record = records.nextRecord() ) != null )
+			{
+				if( record instanceof EOFRecord )
+				{
+					break;
+				}
+				if( record instanceof BoundSheetRecord )
+				{
+					BoundSheetRecord sheet = (BoundSheetRecord)record;
+					_sheetBOF.put( sheet.getSheetname().toUpperCase(), sheet.getPositionOfBof() );
+				}
+				else if( record instanceof SSTRecord )
+				{
+					_sst = (SSTRecord)record;
+				}
+				else if( record instanceof FormatRecord )
+				{
+					FormatRecord format = (FormatRecord)record;
+					_formats.put( format.getIndexCode(), format.getFormatString() );
+				}
+				else if( record instanceof ExtendedFormatRecord )
+				{
+					if( _xfCount >= _xfFormat.length )
+					{
+						_xfFormat = Arrays.copyOf( _xfFormat, _xfFormat.length * 2 );
+					}
+					_xfFormat[_xfCount++] = ((ExtendedFormatRecord)record).getFormatIndex();
+				}
+				else if( record instanceof DateWindow1904Record )
+				{
+					_date1904 = ((DateWindow1904Record)record).getWindowing() == 1;
+				}
+				else if( record instanceof BOFRecord && ((BOFRecord)record).getType() != BOFRecord.TYPE_WORKBOOK )
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			is.close();
+		}
+		_xfString = new String[_xfCount];
+		if( _sst == null )
+		{
+			_sst = new SSTRecord();
+		}
+	}
+
+	private void closeSheet()
+	{
+		if( _sheetStream != null )
+		{
+			try
+			{
+				_sheetStream.close();
+			}
+			catch( IOException e ) { /* Ignore */ }
+		}
+		_sheetStream = null;
+		_records     = null;
+		_pending     = null;
+	}
+}
@@ -0,0 +1,247 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.LittleEndian;
+
+/**
+ * Checks that XlsEventInputTokenizer reads the same rows as XlsInputTokenizer with
+ * FLAG_CACHED_FORMULAS.  With no arguments it checks a generated .xls work book with
+ * a filled down string formula stored as a shared formula, so the first cell of the
+ * range is followed by a SHRFMLA record before its STRING record.  Any work books
+ * named on the command line are checked as well.  Exits with status 1 if any row
+ * differs.
+ */
+public class XlsEventInputTokenizerTest
+{
+	private static final int ROWS = 20;
+
+	// Column of the shared formula, which is the last column of each row
+	private static final int SHARED_COL = 2;
+
+	private static final short SID_BOF      = 0x0809;
+	private static final short SID_FORMULA  = 0x0006;
+	private static final short SID_SHRFMLA  = 0x04BC;
+
+	private static int _checked    = 0;
+	private static int _mismatches = 0;
+
+	/**
+	 * @param args Optional work books to check
+	 */
+	public static void main(
+	    String[] args
+    )
+		throws Exception
+	{
+		File generated = File.createTempFile( "shared", ".xls" );
+		generated.deleteOnExit();
+		build( generated );
+		check( generated.getPath() );
+		for( int i = 0; i < args.length; i++ )
+		{
+			check( args[i] );
+		}
+
+		System.out.println( _checked + " rows checked, " + _mismatches + " differences" );
+		if( _mismatches > 0 )
+		{
+			System.exit( 1 );
+		}
+	}
+
+	/**
+	 * Writes a work book with a name column, a string formula in each row and a filled
+	 * down string formula.  HSSF writes every formula on its own, so the last column
+	 * is made a shared formula by rewriting the records of the sheet
+	 */
+	private static void build(
+		File file
+	)
+		throws Exception
+	{
+		HSSFWorkbook workbook = new HSSFWorkbook();
+		Sheet sheet = workbook.createSheet( "Shared" );
+		Row header = sheet.createRow( 0 );
+		header.createCell( 0 ).setCellValue( "Name" );
+		header.createCell( 1 ).setCellValue( "Upper" );
+		header.createCell( SHARED_COL ).setCellValue( "Label" );
+		for( int r = 1; r <= ROWS; r++ )
+		{
+			Row row = sheet.createRow( r );
+			row.createCell( 0 ).setCellValue( "Space " + r );
+			row.createCell( 1 ).setCellFormula( "UPPER(A" + ( r + 1 ) + ")" );
+			row.createCell( SHARED_COL ).setCellFormula( "A" + ( r + 1 ) + "&\" x\"" );
+		}
+		HSSFFormulaEvaluator.evaluateAllFormulaCells( workbook );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		workbook.write( bytes );
+		workbook.close();
+
+		POIFSFileSystem fs = new POIFSFileSystem( new ByteArrayInputStream( bytes.toByteArray() ));
+		String docName = HSSFWorkbook.getWorkbookDirEntryName( fs.getRoot() );
+		InputStream is = fs.createDocumentInputStream( docName );
+		byte[] stream = IOUtils.toByteArray( is );
+		is.close();
+		fs.close();
+
+		POIFSFileSystem out = new POIFSFileSystem();
+		out.createDocument( new ByteArrayInputStream( shareFormulas( stream )), docName );
+		FileOutputStream os = new FileOutputStream( file );
+		out.writeFilesystem( os );
+		os.close();
+		out.close();
+	}
+
+	/**
+	 * Replaces the formulas in SHARED_COL of the sheet with references to a SHRFMLA
+	 * record holding A&" x" in relative form.  The sheet is the last substream, so the
+	 * sheet offsets in the work book globals are not changed
+	 */
+	private static byte[] shareFormulas(
+		byte[] stream
+	) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int     bofCount = 0;
+		boolean shared   = false;
+		int     pos      = 0;
+		while( pos + 4 <= stream.length )
+		{
+			short sid = LittleEndian.getShort( stream, pos );
+			int   len = LittleEndian.getUShort( stream, pos + 2 );
+			if( sid == SID_BOF )
+			{
+				bofCount++;
+			}
+			if(    sid == SID_FORMULA
+				&& bofCount > 1
+				&& LittleEndian.getUShort( stream, pos + 6 ) == SHARED_COL )
+			{
+				// row, col, xf, result, options, chn, then cce and the ExpPtg
+				byte[] formula = new byte[22 + 5];
+				System.arraycopy( stream, pos + 4, formula, 0, 20 );
+				LittleEndian.putUShort( formula, 14, LittleEndian.getUShort( formula, 14 ) | 0x0008 );
+				LittleEndian.putUShort( formula, 20, 5 );
+				formula[22] = 0x01;
+				LittleEndian.putUShort( formula, 23, 1 );
+				LittleEndian.putUShort( formula, 25, SHARED_COL );
+				writeRecord( out, SID_FORMULA, formula );
+
+				if( !shared )
+				{
+					// tRefN to the same row two columns left, tStr " x", tConcat
+					byte[] rgce = { 0x4C, 0, 0, (byte)0xFE, (byte)0xC0, 0x17, 2, 0, ' ', 'x', 0x08 };
+					byte[] shrfmla = new byte[10 + rgce.length];
+					LittleEndian.putUShort( shrfmla, 0, 1 );
+					LittleEndian.putUShort( shrfmla, 2, ROWS );
+					shrfmla[4] = SHARED_COL;
+					shrfmla[5] = SHARED_COL;
+					shrfmla[7] = ROWS;
+					LittleEndian.putUShort( shrfmla, 8, rgce.length );
+					System.arraycopy( rgce, 0, shrfmla, 10, rgce.length );
+					writeRecord( out, SID_SHRFMLA, shrfmla );
+					shared = true;
+				}
+			}
+			else
+			{
+				out.write( stream, pos, 4 + len );
+			}
+			pos += 4 + len;
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeRecord(
+		ByteArrayOutputStream out,
+		short                 sid,
+		byte[]                data
+	) {
+		byte[] header = new byte[4];
+		LittleEndian.putShort( header, 0, sid );
+		LittleEndian.putUShort( header, 2, data.length );
+		out.write( header, 0, 4 );
+		out.write( data, 0, data.length );
+	}
+
+	private static void check(
+		String fileName
+	)
+		throws Exception
+	{
+		FileInputStream is = new FileInputStream( fileName );
+		HSSFWorkbook workbook = new HSSFWorkbook( is );
+		is.close();
+
+		is = new FileInputStream( fileName );
+		XlsInputTokenizer      expected = new XlsInputTokenizer( fileName, is, null, Parser.FLAG_CACHED_FORMULAS );
+		XlsEventInputTokenizer actual   = new XlsEventInputTokenizer( fileName );
+		try
+		{
+			for( int s = 0; s < workbook.getNumberOfSheets(); s++ )
+			{
+				String tab = workbook.getSheetName( s );
+				expected.setCurrentTab( tab );
+				actual.setCurrentTab( tab );
+				int row = 0;
+				while( true )
+				{
+					String[] expectedRow = expected.getRow();
+					String[] actualRow   = actual.getRow();
+					if( expectedRow == null && actualRow == null )
+					{
+						break;
+					}
+					_checked++;
+					if( !Arrays.equals( expectedRow, actualRow ))
+					{
+						_mismatches++;
+						System.out.println( fileName + " " + tab + " row " + row + " expected "
+							+ Arrays.toString( expectedRow ) + " got " + Arrays.toString( actualRow ));
+					}
+					if( expectedRow == null || actualRow == null )
+					{
+						break;
+					}
+					row++;
+				}
+			}
+		}
+		finally
+		{
+			expected.close();
+			actual.close();
+			workbook.close();
+		}
+	}
+}
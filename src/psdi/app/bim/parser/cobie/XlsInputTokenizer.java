@@ -17,27 +17,43 @@
 **/
 package psdi.app.bim.parser.cobie;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.poi.POIXMLException;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
 
 public class   XlsInputTokenizer
-    implements InputTokenizer
+    implements InputTokenizer, TabCursorSource
 {
 	
 	private Workbook	     _workbook	  = null;
-	private DataFormatter	 _formatter	  = null;
+	private StyleFormatCache _formatter	  = null;
 	private FormulaEvaluator _evaluator	  = null;
 	private Iterator<Row>	 _it	      = null;
+	private final RowBuffer  _view        = new RowBuffer();
+	private OPCPackage       _package     = null;
+	private Set<String>      _skipTabs    = Collections.emptySet();
+	private int              _evalCount   = 0;
+	private long             _flags       = 0;
    
 	public XlsInputTokenizer(
 		String          fileName,
@@ -45,27 +61,68 @@ public class   XlsInputTokenizer
 	)
 	    throws ParseException
 	{
-		
+		this( fileName, is, null, 0 );
+	}
+
+	/**
+	 * @param skipTabs Upper case names of tabs that will not be read.  For .xlsx files
+	 *                 the sheet parts of these tabs are never decoded, so leaving out
+	 *                 a large tab such as Attribute saves most of the cost of loading
+	 *                 it.  A formula that refers to a skipped tab can not be evaluated
+	 *                 and is reported as a cell read error
+	 * @param flags    Parser flags.  FLAG_CACHED_FORMULAS selects the result stored in
+	 *                 the file for formula cells instead of evaluating them
+	 */
+	public XlsInputTokenizer(
+		String          fileName,
+		FileInputStream is,
+		Set<String>     skipTabs,
+		long            flags
+	)
+	    throws ParseException
+	{
+		if( skipTabs != null )
+		{
+			_skipTabs = skipTabs;
+		}
+		_flags = flags;
 		try
 		{
 			// Open the workbook and then create the FormulaEvaluator and
-			// DataFormatter instances that will be needed to, respectively,
+			// cell formatter instances that will be needed to, respectively,
 			// force evaluation of formula found in cells and create a
 			// formatted String encapsulating the cells contents.
 			try 
 			{
-	            _workbook = WorkbookFactory.create(is);
+				if( !_skipTabs.isEmpty() && fileName != null && fileName.toLowerCase().endsWith( ".xlsx" ))
+				{
+					// Opening the package from the file reads parts on demand from the
+					// zip directory, so the parts of skipped tabs are never inflated
+					_package  = OPCPackage.open( new File( fileName ), PackageAccess.READ );
+					_workbook = new SelectedTabsWorkbook( _package );
+				}
+				else
+				{
+					_workbook = WorkbookFactory.create(is);
+				}
+            }
+            catch( POIXMLException e ) 
+            {
+            	close();
+            	String params[] = {fileName, Parser.SHEET_EXCEL, CobieParser.msgFromException( e ) };
+            	throw new ParseException( Parser.ERR_FILE_OPEN, params );
             }
             catch( IOException ioe ) 
             {
+            	close();
             	String params[] = {fileName, Parser.SHEET_EXCEL, CobieParser.msgFromException( ioe ) };
             	throw new ParseException( Parser.ERR_FILE_OPEN, params );
             }
-			_evaluator = _workbook.getCreationHelper().createFormulaEvaluator();
-			_formatter = new DataFormatter();
+			createFormatters();
 		}
 		catch( InvalidFormatException e )
 		{
+			close();
 			String params[] = { fileName, e.getLocalizedMessage() };
 			throw new ParseException( Parser.ERR_INVALID_XLS_FILE_ERROR, params );
 		}
@@ -83,6 +140,38 @@ public class   XlsInputTokenizer
 		}
 	}
 
+	/**
+	 * A cursor over the work book of another tokenizer.  It has its own evaluator
+	 * and formatter since neither can be shared between threads
+	 */
+	private XlsInputTokenizer(
+		XlsInputTokenizer source
+	) {
+		_workbook = source._workbook;
+		_skipTabs = source._skipTabs;
+		_flags    = source._flags;
+		createFormatters();
+	}
+
+	private void createFormatters()
+	{
+		_evaluator = _workbook.getCreationHelper().createFormulaEvaluator();
+		if( (_flags & Parser.FLAG_CACHED_FORMULAS) != 0 )
+		{
+			_evaluator = new CachedResultEvaluator( _evaluator );
+		}
+		else
+		{
+			_evaluator = new CountingEvaluator( _evaluator );
+		}
+		_formatter = new StyleFormatCache();
+	}
+
+	public InputTokenizer newCursor()
+	{
+		return new XlsInputTokenizer( this );
+	}
+
 	public boolean setCurrentTab(
 	    String name
     ) {
@@ -134,6 +223,16 @@ public class   XlsInputTokenizer
 
 	public String[] getRow() throws CellReadException
 	{
+		if( getRowView() == null )
+		{
+			return null;
+		}
+		return _view.toStrings();
+	}
+
+	public RowView getRowView() throws CellReadException
+	{
+		_view.clear();
 		if( !_it.hasNext() )
 		{
 			return null;
@@ -150,7 +249,7 @@ public class   XlsInputTokenizer
 		{
 			return null;
 		}
-		String values[] = new String[lastCellNum];
+		_view.setSize( lastCellNum );
 		
 		for( int i = 0; i <= lastCellNum; i++ )
 		{
@@ -173,15 +272,181 @@ public class   XlsInputTokenizer
 			catch (Throwable t) {
 				throw new CellReadException(i);
 			}
-			values[ cell.getColumnIndex() ] = value;
+			_view.set( cell.getColumnIndex(), value );
 		}
 
-		return values;
+		return _view;
 	}
 	
+	/**
+	 * @return The number of formula cells that were evaluated rather than read from
+	 *         the result cached in the file
+	 */
+	public int getEvaluationCount()
+	{
+		return _evalCount;
+	}
+
 	public void close()
 	{
+		if( _package != null )
+		{
+			// Read only package, so discard rather than save
+			_package.revert();
+		}
 		_it       = null;
 		_workbook = null;
+		_package  = null;
+	}
+
+	/**
+	 * Passes evaluation through to the work book's evaluator and counts the cells
+	 * evaluated
+	 */
+	private class   CountingEvaluator
+	    implements  FormulaEvaluator
+	{
+		protected final FormulaEvaluator _delegate;
+
+		CountingEvaluator(
+			FormulaEvaluator delegate
+		) {
+			_delegate = delegate;
+		}
+
+		public int evaluateFormulaCell(
+			Cell cell
+		) {
+			_evalCount++;
+			return _delegate.evaluateFormulaCell( cell );
+		}
+
+		public void clearAllCachedResultValues()
+		{
+			_delegate.clearAllCachedResultValues();
+		}
+
+		public void notifySetFormula(
+			Cell cell
+		) {
+			_delegate.notifySetFormula( cell );
+		}
+
+		public void notifyDeleteCell(
+			Cell cell
+		) {
+			_delegate.notifyDeleteCell( cell );
+		}
+
+		public void notifyUpdateCell(
+			Cell cell
+		) {
+			_delegate.notifyUpdateCell( cell );
+		}
+
+		public void evaluateAll()
+		{
+			_delegate.evaluateAll();
+		}
+
+		public CellValue evaluate(
+			Cell cell
+		) {
+			return _delegate.evaluate( cell );
+		}
+
+		public Cell evaluateInCell(
+			Cell cell
+		) {
+			return _delegate.evaluateInCell( cell );
+		}
+
+		public void setupReferencedWorkbooks(
+			Map<String, FormulaEvaluator> workbooks
+		) {
+			_delegate.setupReferencedWorkbooks( workbooks );
+		}
+
+		public void setIgnoreMissingWorkbooks(
+			boolean ignore
+		) {
+			_delegate.setIgnoreMissingWorkbooks( ignore );
+		}
+
+		public void setDebugEvaluationOutputForNextEval(
+			boolean value
+		) {
+			_delegate.setDebugEvaluationOutputForNextEval( value );
+		}
+	}
+
+	/**
+	 * Reports the result cached in the file as the result of a formula so
+	 * the cell formatter formats it without evaluating the formula.  Cells without a
+	 * cached result are still evaluated
+	 */
+	private class   CachedResultEvaluator
+	    extends     CountingEvaluator
+	{
+		CachedResultEvaluator(
+			FormulaEvaluator delegate
+		) {
+			super( delegate );
+		}
+
+		@Override
+		public int evaluateFormulaCell(
+			Cell cell
+		) {
+			if( hasCachedResult( cell ))
+			{
+				return cell.getCachedFormulaResultType();
+			}
+			return super.evaluateFormulaCell( cell );
+		}
+
+		/**
+		 * A .xls formula record always holds a result.  An .xlsx formula cell only has
+		 * one if the application that saved it wrote a value element
+		 */
+		private boolean hasCachedResult(
+			Cell cell
+		) {
+			if( cell instanceof XSSFCell )
+			{
+				return ((XSSFCell)cell).getCTCell().isSetV();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * An .xlsx work book that does not decode the sheets named in _skipTabs.  The
+	 * sheets are parsed while the XSSFWorkbook constructor runs, before any field of
+	 * this class is set, so the skip list is read from the enclosing tokenizer
+	 */
+	private class   SelectedTabsWorkbook
+	    extends     XSSFWorkbook
+	{
+		SelectedTabsWorkbook(
+			OPCPackage pkg
+		)
+			throws IOException
+		{
+			super( pkg );
+		}
+
+		@Override
+		public void parseSheet(
+			Map<String, XSSFSheet> shIdMap, 
+			CTSheet                ctSheet
+		) {
+			String name = ctSheet.getName();
+			if( name != null && _skipTabs.contains( name.toUpperCase() ))
+			{
+				return;
+			}
+			super.parseSheet( shIdMap, ctSheet );
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,525 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Hashtable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * Reads .xlsx work books using the XSSF event model.  Unlike XlsInputTokenizer
+ * the work book is never loaded into memory.  The sheet part for the current tab
+ * is streamed one row at a time, so memory use is bounded by the shared string
+ * table and the widest row regardless of the size of the work book.
+ * <p>
+ * Cell values are converted to strings the same way DataFormatter does for
+ * XlsInputTokenizer.  Formula cells use the result cached in the file since there
+ * is no work book to evaluate them against.
+ */
+public class   XlsxEventInputTokenizer
+    implements InputTokenizer, TabCursorSource
+{
+	private static final String NS_RELATIONSHIPS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	private final String                     _fileName;
+	private final boolean                    _isCursor;
+	private OPCPackage                       _package     = null;
+	private XSSFReader                       _reader      = null;
+	private ReadOnlySharedStringsTable       _strings     = null;
+	private StylesTable                      _styles      = null;
+	private final DataFormatter              _formatter   = new DataFormatter();
+	private final XMLInputFactory            _xmlFactory;
+	private boolean                          _date1904    = false;
+
+	// Upper case sheet name to package relationship id
+	private final Hashtable<String, String>  _sheetIds;
+
+	// Number format for each style index, filled in as styles are encountered
+	private short[]                          _fmtIndex    = new short[0];
+	private String[]                         _fmtString   = new String[0];
+
+	private InputStream                      _sheetStream = null;
+	private XMLStreamReader                  _sheet       = null;
+	private IOException                      _tabError    = null;
+
+	// Reused for every row
+	private final RowBuffer                  _view        = new RowBuffer();
+
+	public XlsxEventInputTokenizer(
+		String fileName
+	)
+	    throws ParseException
+	{
+		_fileName   = fileName;
+		_isCursor   = false;
+		_sheetIds   = new Hashtable<String, String>();
+		_xmlFactory = createXmlFactory();
+
+		try
+		{
+			// Opening from the file name lets the package read parts on demand from
+			// the zip directory instead of inflating the whole work book
+			_package = OPCPackage.open( fileName, PackageAccess.READ );
+			_reader  = new XSSFReader( _package );
+			readWorkbook();
+			_strings = new ReadOnlySharedStringsTable( _package );
+			_styles  = _reader.getStylesTable();
+		}
+		catch( InvalidFormatException e )
+		{
+			close();
+			String params[] = { fileName, CobieParser.msgFromException( e ) };
+			throw new ParseException( Parser.ERR_INVALID_XLS_FILE_ERROR, params );
+		}
+		catch( Exception e )
+		{
+			close();
+        	String params[] = { fileName, Parser.SHEET_EXCEL, CobieParser.msgFromException( e ) };
+        	throw new ParseException( Parser.ERR_FILE_OPEN, params );
+		}
+	}
+
+	/**
+	 * A cursor that shares the package, shared strings and styles of another
+	 * tokenizer.  These are only read once they are loaded
+	 */
+	private XlsxEventInputTokenizer(
+		XlsxEventInputTokenizer source
+	) {
+		_fileName   = source._fileName;
+		_isCursor   = true;
+		_package    = source._package;
+		_reader     = source._reader;
+		_strings    = source._strings;
+		_styles     = source._styles;
+		_date1904   = source._date1904;
+		_sheetIds   = source._sheetIds;
+		_xmlFactory = createXmlFactory();
+	}
+
+	private static XMLInputFactory createXmlFactory()
+	{
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty( XMLInputFactory.SUPPORT_DTD, Boolean.FALSE );
+		factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE );
+		return factory;
+	}
+
+	public InputTokenizer newCursor()
+	{
+		return new XlsxEventInputTokenizer( this );
+	}
+
+	public boolean setCurrentTab(
+	    String name
+    ) {
+		closeSheet();
+		_tabError = null;
+		if( name == null )
+		{
+			return false;
+		}
+		String relId = _sheetIds.get( name.toUpperCase() );
+		if( relId == null )
+		{
+			return false;
+		}
+		try
+		{
+			_sheetStream = _reader.getSheet( relId );
+			_sheet       = _xmlFactory.createXMLStreamReader( _sheetStream );
+		}
+		catch( Exception e )
+		{
+			// Reported on the first read so the caller sees it as a read error for the tab
+			_tabError = new IOException( CobieParser.msgFromException( e ), e );
+			closeSheet();
+		}
+		return true;
+	}
+
+	public String[] getRow()
+		throws IOException, CellReadException
+	{
+		if( getRowView() == null )
+		{
+			return null;
+		}
+		return _view.toStrings();
+	}
+
+	public RowView getRowView()
+		throws IOException, CellReadException
+	{
+		if( _tabError != null )
+		{
+			IOException e = _tabError;
+			_tabError = null;
+			throw e;
+		}
+		if( _sheet == null )
+		{
+			return null;
+		}
+
+		try
+		{
+			if( !nextElement( "row" ) )
+			{
+				closeSheet();
+				return null;
+			}
+			return readRow();
+		}
+		catch( XMLStreamException e )
+		{
+			closeSheet();
+			throw new IOException( CobieParser.msgFromException( e ), e );
+		}
+	}
+
+	public void close()
+	{
+		closeSheet();
+		if( _package != null && !_isCursor )
+		{
+			// Read only package, so discard rather than save
+			_package.revert();
+		}
+		_package = null;
+		_reader  = null;
+		_strings = null;
+		_styles  = null;
+	}
+
+	public String getFileName()
+	{
+		return _fileName;
+	}
+
+	/**
+	 * Reads the cells of the current row element.  The whole row is consumed even
+	 * when a cell cannot be converted so the next call starts on the next row.
+	 */
+	private RowView readRow()
+		throws XMLStreamException, CellReadException
+	{
+		int col      = -1;
+		int badCell  = -1;
+		_view.clear();
+
+		while( _sheet.hasNext() )
+		{
+			int event = _sheet.next();
+			if( event == XMLStreamConstants.END_ELEMENT && _sheet.getLocalName().equals( "row" ) )
+			{
+				break;
+			}
+			if( event != XMLStreamConstants.START_ELEMENT || !_sheet.getLocalName().equals( "c" ))
+			{
+				continue;
+			}
+
+			String ref   = _sheet.getAttributeValue( null, "r" );
+			String type  = _sheet.getAttributeValue( null, "t" );
+			String style = _sheet.getAttributeValue( null, "s" );
+			col = ( ref != null ) ? columnIndex( ref ) : col + 1;
+
+			String raw = readCell( type );
+			String value;
+			try
+			{
+				value = cellValue( type, style, raw );
+			}
+			catch( Throwable t )
+			{
+				if( badCell < 0 )
+				{
+					badCell = col;
+				}
+				continue;
+			}
+
+			_view.set( col, value );
+		}
+
+		if( badCell >= 0 )
+		{
+			throw new CellReadException( badCell );
+		}
+		return _view;
+	}
+
+	/**
+	 * Reads the content of a cell element leaving the reader on its end tag
+	 * @param type Value of the t attribute
+	 * @return Raw value, text of an inline string, or null if the cell has no value
+	 */
+	private String readCell(
+		String type
+	)
+		throws XMLStreamException
+	{
+		String        raw    = null;
+		StringBuilder inline = null;
+		int           depth  = 1;
+		while( depth > 0 && _sheet.hasNext() )
+		{
+			int event = _sheet.next();
+			if( event == XMLStreamConstants.START_ELEMENT )
+			{
+				String tag = _sheet.getLocalName();
+				if( tag.equals( "v" ))
+				{
+					raw = _sheet.getElementText();
+				}
+				else if( tag.equals( "t" ) && "inlineStr".equals( type ))
+				{
+					if( inline == null )
+					{
+						inline = new StringBuilder();
+					}
+					inline.append( _sheet.getElementText() );
+				}
+				else if( tag.equals( "rPh" ))
+				{
+					skipElement();			// Phonetic runs are not part of the value
+				}
+				else
+				{
+					depth++;
+				}
+			}
+			else if( event == XMLStreamConstants.END_ELEMENT )
+			{
+				depth--;
+			}
+		}
+		if( inline != null )
+		{
+			return inline.toString();
+		}
+		return raw;
+	}
+
+	private String cellValue(
+		String type,
+		String style,
+		String raw
+	) {
+		// A cell element with no value is a blank cell
+		if( raw == null )
+		{
+			return "";
+		}
+		if( type == null || type.equals( "n" ))
+		{
+			int styleIdx = ( style != null ) ? Integer.parseInt( style ) : 0;
+			return formatNumber( Double.parseDouble( raw ), styleIdx );
+		}
+		if( type.equals( "s" ))
+		{
+			return _strings.getEntryAt( Integer.parseInt( raw ));
+		}
+		if( type.equals( "b" ))
+		{
+			return raw.equals( "0" ) ? "FALSE" : "TRUE";
+		}
+		// inlineStr, str (formula string result), e (error text) and d (ISO date)
+		return raw;
+	}
+
+	private String formatNumber(
+		double value,
+		int    styleIdx
+	) {
+		if( _styles == null )
+		{
+			return _formatter.formatRawCellContents( value, 0, BuiltinFormats.getBuiltinFormat( 0 ), _date1904 );
+		}
+		if( styleIdx >= _fmtString.length )
+		{
+			int size = Math.max( styleIdx + 1, _fmtString.length * 2 );
+			_fmtIndex  = Arrays.copyOf( _fmtIndex, size );
+			_fmtString = Arrays.copyOf( _fmtString, size );
+		}
+		if( _fmtString[styleIdx] == null )
+		{
+			XSSFCellStyle cellStyle = _styles.getStyleAt( styleIdx );
+			short  fmtIndex  = 0;
+			String fmtString = null;
+			if( cellStyle != null )
+			{
+				fmtIndex  = cellStyle.getDataFormat();
+				fmtString = cellStyle.getDataFormatString();
+			}
+			if( fmtString == null )
+			{
+				fmtString = BuiltinFormats.getBuiltinFormat( fmtIndex );
+			}
+			if( fmtString == null )
+			{
+				fmtString = BuiltinFormats.getBuiltinFormat( 0 );
+			}
+			_fmtIndex[styleIdx]  = fmtIndex;
+			_fmtString[styleIdx] = fmtString;
+		}
+		return _formatter.formatRawCellContents( value, _fmtIndex[styleIdx], _fmtString[styleIdx], _date1904 );
+	}
+
+	/**
+	 * Builds the sheet name to relationship id map and picks up the date system
+	 * from workbook.xml
+	 */
+	private void readWorkbook()
+		throws IOException, InvalidFormatException, XMLStreamException, OpenXML4JException
+	{
+		InputStream is = _reader.getWorkbookData();
+		XMLStreamReader wb = null;
+		try
+		{
+			wb = _xmlFactory.createXMLStreamReader( is );
+			while( wb.hasNext() )
+			{
+				if( wb.next() != XMLStreamConstants.START_ELEMENT )
+				{
+					continue;
+				}
+				String tag = wb.getLocalName();
+				if( tag.equals( "workbookPr" ))
+				{
+					String date1904 = wb.getAttributeValue( null, "date1904" );
+					_date1904 = "1".equals( date1904 ) || "true".equalsIgnoreCase( date1904 );
+				}
+				else if( tag.equals( "sheet" ))
+				{
+					String name  = wb.getAttributeValue( null, "name" );
+					String relId = wb.getAttributeValue( NS_RELATIONSHIPS, "id" );
+					if( name != null && relId != null )
+					{
+						_sheetIds.put( name.toUpperCase(), relId );
+					}
+				}
+			}
+		}
+		finally
+		{
+			if( wb != null )
+			{
+				wb.close();
+			}
+			is.close();
+		}
+	}
+
+	/**
+	 * Advance to the next start tag with the given name
+	 * @return false if the end of the document is reached first
+	 */
+	private boolean nextElement(
+		String name
+	)
+		throws XMLStreamException
+	{
+		while( _sheet.hasNext() )
+		{
+			if(    _sheet.next() == XMLStreamConstants.START_ELEMENT
+				&& _sheet.getLocalName().equals( name ))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void skipElement()
+		throws XMLStreamException
+	{
+		int depth = 1;
+		while( depth > 0 && _sheet.hasNext() )
+		{
+			int event = _sheet.next();
+			if( event == XMLStreamConstants.START_ELEMENT )
+			{
+				depth++;
+			}
+			else if( event == XMLStreamConstants.END_ELEMENT )
+			{
+				depth--;
+			}
+		}
+	}
+
+	private void closeSheet()
+	{
+		if( _sheet != null )
+		{
+			try
+			{
+				_sheet.close();
+			}
+			catch( XMLStreamException e ) { /* Ignore */ }
+		}
+		if( _sheetStream != null )
+		{
+			try
+			{
+				_sheetStream.close();
+			}
+			catch( IOException e ) { /* Ignore */ }
+		}
+		_sheet       = null;
+		_sheetStream = null;
+	}
+
+	/**
+	 * Converts the column portion of a cell reference such as AB12 to a zero based index
+	 */
+	static int columnIndex(
+		String ref
+	) {
+		int col = 0;
+		for( int i = 0; i < ref.length(); i++ )
+		{
+			char c = ref.charAt( i );
+			if( c < 'A' || c > 'Z' )
+			{
+				break;
+			}
+			col = col * 26 + ( c - 'A' + 1 );
+		}
+		return col - 1;
+	}
+}
@@ -0,0 +1,217 @@
+/**
+* Copyright IBM Corporation 2009-2017
+*
+* Licensed under the Eclipse Public License - v 1.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* https://www.eclipse.org/legal/epl-v10.html
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+* @Author Doug Wood
+**/
+package psdi.app.bim.parser.cobie;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads a zip file holding one CSV file per COBie sheet as if it were a work book.
+ * Each entry is mapped to a tab from the last word of its file name, so
+ * Facility.csv, FACILITIES.csv and COBie2_24_template_Facilities.csv are all read
+ * as the Facility tab.
+ * <p>
+ * The entries are read straight from the zip file with no temporary files.  Each
+ * selected entry is decompressed on its own thread, a few blocks ahead of the
+ * tokenizer, so the entries are inflated in parallel while earlier tabs are parsed.
+ */
+public class   ZipCsvInputTokenizer
+    implements InputTokenizer, TabCursorSource
+{
+	private final String                                 _fileName;
+	private final boolean                                _isCursor;
+	private ZipFile                                      _zip;
+	private final Hashtable<String, PrefetchInputStream> _entries;
+	private CsvInputTokenizer                            _current = null;
+
+	/**
+	 * @param fileName Zip file
+	 * @param tabs     Upper case names of the tabs that will be read.  Entries for
+	 *                 any other tab are not decompressed
+	 */
+	public ZipCsvInputTokenizer(
+		String   fileName,
+		String[] tabs
+	)
+		throws ParseException
+	{
+		_fileName = fileName;
+		_isCursor = false;
+		_entries  = new Hashtable<String, PrefetchInputStream>();
+		try
+		{
+			_zip = new ZipFile( fileName );
+			Enumeration<? extends ZipEntry> entries = _zip.entries();
+			while( entries.hasMoreElements() )
+			{
+				ZipEntry entry = entries.nextElement();
+				if( entry.isDirectory() || !entry.getName().toLowerCase().endsWith( ".csv" ))
+				{
+					continue;
+				}
+				String tab = getTabName( entry.getName(), tabs );
+				if( tab == null || _entries.containsKey( tab ))
+				{
+					continue;
+				}
+				_entries.put( tab, new PrefetchInputStream( _zip.getInputStream( entry ), entry.getName() ));
+			}
+		}
+		catch( IOException e )
+		{
+			close();
+			String params[] = { fileName, Parser.SHEET_EXCEL, CobieParser.msgFromException( e ) };
+			throw new ParseException( Parser.ERR_FILE_OPEN, params );
+		}
+	}
+
+	/**
+	 * A cursor that takes its entries from another tokenizer.  Each entry can only be
+	 * read once, by whichever tokenizer selects its tab first
+	 */
+	private ZipCsvInputTokenizer(
+		ZipCsvInputTokenizer source
+	) {
+		_fileName = source._fileName;
+		_isCursor = true;
+		_zip      = source._zip;
+		_entries  = source._entries;
+	}
+
+	public InputTokenizer newCursor()
+	{
+		return new ZipCsvInputTokenizer( this );
+	}
+
+	public boolean setCurrentTab(
+	    String name
+    ) {
+		closeCurrent();
+		if( name == null )
+		{
+			return false;
+		}
+		PrefetchInputStream is = _entries.remove( name.toUpperCase() );
+		if( is == null )
+		{
+			return false;
+		}
+		_current = new CsvInputTokenizer( is );
+		return true;
+	}
+
+	public String[] getRow()
+		throws IOException
+	{
+		if( _current == null )
+		{
+			return null;
+		}
+		return _current.getRow();
+	}
+
+	public RowView getRowView()
+		throws IOException
+	{
+		if( _current == null )
+		{
+			return null;
+		}
+		return _current.getRowView();
+	}
+
+	public void close()
+	{
+		closeCurrent();
+		if( _isCursor )
+		{
+			_zip = null;
+			return;
+		}
+		Iterator<PrefetchInputStream> itr = _entries.values().iterator();
+		while( itr.hasNext() )
+		{
+			itr.next().close();
+		}
+		_entries.clear();
+		if( _zip != null )
+		{
+			try
+			{
+				_zip.close();
+			}
+			catch( IOException e ) { /* Ignore */ }
+		}
+		_zip = null;
+	}
+
+	public String getFileName()
+	{
+		return _fileName;
+	}
+
+	private void closeCurrent()
+	{
+		if( _current != null )
+		{
+			_current.close();
+		}
+		_current = null;
+	}
+
+	/**
+	 * Maps an entry to a tab using the last word of its file name, which may be the
+	 * tab name or its plural
+	 * @return The tab, or null if the entry is not for one of the tabs
+	 */
+	static String getTabName(
+		String   entryName,
+		String[] tabs
+	) {
+		String name = entryName.substring( entryName.lastIndexOf( '/' ) + 1 );
+		name = name.substring( 0, name.length() - ".csv".length() ).toUpperCase();
+
+		int end = name.length();
+		while( end > 0 && !Character.isLetter( name.charAt( end - 1 )))
+		{
+			end--;
+		}
+		int start = end;
+		while( start > 0 && Character.isLetter( name.charAt( start - 1 )))
+		{
+			start--;
+		}
+		String word = name.substring( start, end );
+
+		for( int i = 0; i < tabs.length; i++ )
+		{
+			String tab = tabs[i];
+			if(    word.equals( tab )
+				|| word.equals( tab + "S" )
+				|| ( tab.endsWith( "Y" ) && word.equals( tab.substring( 0, tab.length() - 1 ) + "IES" )))
+			{
+				return tab;
+			}
+		}
+		return null;
+	}
+}